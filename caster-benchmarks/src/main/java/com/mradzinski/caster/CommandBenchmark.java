@@ -0,0 +1,66 @@
+package com.mradzinski.caster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command path: seeks coalesced while scrubbing, command round trips through the simulated receiver
+ * and latency recording.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+    private SimulatedSession session;
+    private CommandCoalescer seekCoalescer;
+    private final Histogram histogram = new Histogram();
+    private long value = 0;
+
+    @Setup
+    public void setUp() {
+        session = new SimulatedSession();
+        seekCoalescer = new CommandCoalescer(session.scheduler, session.scheduler, session.metrics,
+                CasterMetrics.COMMAND_SEEK, 250) {
+            @Override
+            MediaClient.PendingCommand send(double value) {
+                return session.mediaClient.seek((long) value);
+            }
+        };
+    }
+
+    /**
+     * A seekbar drag: a seek per frame, collapsed while one is in flight.
+     */
+    @Benchmark
+    public void scrub() {
+        seekCoalescer.submit(value++ % SimulatedSession.MEDIA_DURATION_MS);
+        session.scheduler.advanceBy(16);
+    }
+
+    /**
+     * A volume change sent to the simulated receiver, timed until its result arrives.
+     */
+    @Benchmark
+    public void trackedCommand() {
+        session.metrics.trackCommand(CasterMetrics.COMMAND_SET_VOLUME, session.mediaClient.setStreamVolume(0.5), null);
+        session.scheduler.advanceBy(1);
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(value++ & 0xFFFF);
+    }
+}
@@ -0,0 +1,127 @@
+package com.mradzinski.caster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes per catalog item, read from gc.alloc.rate.norm: every operation builds one item out of
+ * strings the catalog already holds. MediaData lives in the Android module, so its layouts before
+ * and after the compaction are mirrored here, with the real {@link PackedStrings} and
+ * {@link StringPool}.
+ *
+ * <p>A catalog decoded from JSON also held a copy of the content type per item in the mutable
+ * layout, which the pool removes. It isn't counted here.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MediaDataFootprintBenchmark {
+    private static final int CATALOG_SIZE = 1024;
+
+    private final StringPool contentTypes = new StringPool(256);
+    private String[] urls;
+    private String[] titles;
+    private String[] thumbnailUrls;
+    private String contentType;
+    private int index = 0;
+
+    @Setup
+    public void setUp() {
+        urls = new String[CATALOG_SIZE];
+        titles = new String[CATALOG_SIZE];
+        thumbnailUrls = new String[CATALOG_SIZE];
+
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            urls[i] = "https://example.com/media/" + i + ".m3u8";
+            titles[i] = "Track " + i;
+            thumbnailUrls[i] = "https://example.com/thumbnails/" + i + ".jpg";
+        }
+
+        contentType = contentTypes.get("application/x-mpegURL");
+    }
+
+    @Benchmark
+    public Object mutableItem() {
+        int i = index++ & (CATALOG_SIZE - 1);
+
+        MutableLayout item = new MutableLayout(urls[i]);
+        item.contentType = contentType;
+        item.title = titles[i];
+        item.imageUrls.add(thumbnailUrls[i]);
+
+        return item;
+    }
+
+    @Benchmark
+    public Object compactItem() {
+        int i = index++ & (CATALOG_SIZE - 1);
+
+        return new CompactLayout(urls[i], contentTypes.get(contentType), titles[i],
+                PackedStrings.append(null, thumbnailUrls[i]));
+    }
+
+    /**
+     * The fields of MediaData before it was made immutable.
+     */
+    @SuppressWarnings("unused")
+    private static final class MutableLayout {
+        private String url;
+        private int streamType = 0;
+        private String contentType;
+        private long streamDuration = -1L;
+        private int mediaType = 0;
+        private String title;
+        private String subtitle;
+        private boolean autoPlay = true;
+        private long position;
+        private List<String> imageUrls;
+        private double playbackRate = 1.0;
+        private double preloadTime = 20.0;
+
+        MutableLayout(String url) {
+            this.url = url;
+            imageUrls = new ArrayList<>();
+        }
+    }
+
+    /**
+     * The fields of the immutable MediaData.
+     */
+    @SuppressWarnings("unused")
+    private static final class CompactLayout {
+        private final long streamDuration = -1L;
+        private final long position = 0L;
+        private final double playbackRate = 1.0;
+        private final double preloadTime = 20.0;
+        private final String url;
+        private final String contentType;
+        private final String title;
+        private final String subtitle = null;
+        private final String imageUrls;
+        private final int mediaType = 0;
+        private final byte streamType = 0;
+        private final boolean autoPlay = true;
+
+        CompactLayout(String url, String contentType, String title, String imageUrls) {
+            this.url = url;
+            this.contentType = contentType;
+            this.title = title;
+            this.imageUrls = imageUrls;
+        }
+    }
+}
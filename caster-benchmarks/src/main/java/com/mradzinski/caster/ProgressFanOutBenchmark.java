@@ -0,0 +1,65 @@
+package com.mradzinski.caster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of a progress tick of the simulated receiver to the progress listeners.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressFanOutBenchmark {
+    private static final long TICK_MS = 100;
+
+    @Param({"1", "8", "32"})
+    public int listenerCount;
+
+    private SimulatedSession session;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        session = new SimulatedSession();
+        session.mediaClient.addProgressListener(session.statusDispatcher, TICK_MS);
+
+        for (int i = 0; i < listenerCount; i++) {
+            session.statusDispatcher.getProgressListeners().add(new MediaClient.ProgressListener() {
+                @Override
+                public void onProgressUpdated(long progressMs, long durationMs) {
+                    blackhole.consume(progressMs);
+                }
+            });
+        }
+    }
+
+    /**
+     * One progress tick, including the virtual time step which triggers it.
+     */
+    @Benchmark
+    public int progressTick() {
+        return session.scheduler.advanceBy(TICK_MS);
+    }
+
+    /**
+     * The fan-out alone.
+     */
+    @Benchmark
+    public void fanOut() {
+        session.statusDispatcher.onProgressUpdated(1000, SimulatedSession.MEDIA_DURATION_MS);
+    }
+}
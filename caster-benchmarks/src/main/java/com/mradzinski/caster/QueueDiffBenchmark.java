@@ -0,0 +1,64 @@
+package com.mradzinski.caster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue diffing of large playlists: a few edits, as when the user moves an item or a recommendation
+ * is inserted, and a shuffle, the worst case.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueDiffBenchmark {
+    @Param({"100", "5000"})
+    public int size;
+
+    private List<String> current;
+    private List<String> edited;
+    private List<String> shuffled;
+
+    @Setup
+    public void setUp() {
+        current = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            current.add("https://example.com/media/" + i + ".m3u8");
+        }
+
+        edited = new ArrayList<>(current);
+        Collections.swap(edited, size / 10, size / 2);
+        edited.remove(size / 3);
+        edited.add(size / 4, "https://example.com/media/recommended.m3u8");
+
+        shuffled = new ArrayList<>(current);
+        Collections.shuffle(shuffled, new Random(42));
+    }
+
+    @Benchmark
+    public QueueDiff fewEdits() {
+        return QueueDiff.compute(current, edited);
+    }
+
+    @Benchmark
+    public QueueDiff shuffle() {
+        return QueueDiff.compute(current, shuffled);
+    }
+}
@@ -0,0 +1,30 @@
+package com.mradzinski.caster;
+
+/**
+ * A {@link SimulatedMediaClient} which is already playing a media, wired to a {@link StatusDispatcher}
+ * the same way Caster wires a RemoteMediaClient.
+ */
+final class SimulatedSession {
+    static final long MEDIA_DURATION_MS = 2 * 60 * 60 * 1000L;
+
+    final SimulatedScheduler scheduler = new SimulatedScheduler();
+    final SimulatedMediaClient mediaClient;
+    final CasterMetrics metrics = new CasterMetrics(scheduler);
+    final StatusDispatcher statusDispatcher = new StatusDispatcher(scheduler, metrics);
+
+    SimulatedSession() {
+        mediaClient = new SimulatedMediaClient.Builder(scheduler, scheduler)
+                .setNetworkDelay(0, 0)
+                .setStatusInterval(0)
+                .build();
+
+        statusDispatcher.setMediaClient(mediaClient);
+        mediaClient.addListener(statusDispatcher);
+
+        metrics.onLoadRequested(scheduler.now());
+        mediaClient.load("https://example.com/media.mp4", MEDIA_DURATION_MS, true, 0);
+        scheduler.advanceBy(1000);
+
+        if (!statusDispatcher.getStatus().isPlaying()) throw new IllegalStateException("The simulated media isn't playing");
+    }
+}
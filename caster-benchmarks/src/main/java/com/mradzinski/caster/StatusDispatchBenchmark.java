@@ -0,0 +1,73 @@
+package com.mradzinski.caster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status update handling of Caster's media listener: snapshot, state machine, metrics and fan-out
+ * to the playback state listeners.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusDispatchBenchmark {
+    @Param({"1", "8"})
+    public int listenerCount;
+
+    private SimulatedSession session;
+    private CasterStatus[] transitions;
+    private int transitionIndex = 0;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        session = new SimulatedSession();
+
+        for (int i = 0; i < listenerCount; i++) {
+            session.statusDispatcher.getPlaybackStateListeners().add(new PlaybackStateMachine.Listener() {
+                @Override
+                public void onPlaybackStateChanged(int previousState, int newState, long timestamp) {
+                    blackhole.consume(newState);
+                }
+            });
+        }
+
+        CasterStatus playing = session.statusDispatcher.getStatus();
+        transitions = new CasterStatus[] {
+                new CasterStatus(MediaClient.PLAYER_STATE_BUFFERING, MediaClient.IDLE_REASON_NONE, playing.getPosition(),
+                        playing.getDuration(), playing.getPlaybackRate(), playing.getVolume(), playing.getContentId(), 0),
+                playing
+        };
+    }
+
+    /**
+     * A status update which doesn't change the state, e.g. a position or volume update.
+     */
+    @Benchmark
+    public CasterStatus statusUpdate() {
+        session.statusDispatcher.onStatusUpdated();
+        return session.statusDispatcher.getStatus();
+    }
+
+    /**
+     * A status update which causes a transition, alternating between buffering and playing.
+     */
+    @Benchmark
+    public boolean transition() {
+        return session.statusDispatcher.dispatch(transitions[transitionIndex++ & 1]);
+    }
+}
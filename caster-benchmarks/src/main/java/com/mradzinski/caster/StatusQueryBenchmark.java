@@ -0,0 +1,52 @@
+package com.mradzinski.caster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The reads behind CasterPlayer's query methods (isPlaying, isPaused, isBuffering,
+ * getCurrentPlayingMediaUrl), which only read the shared status snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusQueryBenchmark {
+    private SimulatedSession session;
+
+    @Setup
+    public void setUp() {
+        session = new SimulatedSession();
+    }
+
+    @Benchmark
+    public void queries(Blackhole blackhole) {
+        blackhole.consume(session.statusDispatcher.getStatus().isPlaying());
+        blackhole.consume(session.statusDispatcher.getStatus().isPaused());
+        blackhole.consume(session.statusDispatcher.getStatus().isBuffering());
+        blackhole.consume(session.statusDispatcher.getStatus().getContentId());
+    }
+
+    /**
+     * The same reads from several threads, e.g. the UI and a few background listeners.
+     */
+    @Benchmark
+    @Threads(4)
+    public void concurrentQueries(Blackhole blackhole) {
+        queries(blackhole);
+    }
+}
@@ -0,0 +1,48 @@
+package com.mradzinski.caster;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter. Every delay is the previous one times the multiplier, up to the
+ * maximum, and is then spread randomly by +/- the jitter fraction, so clients which lost their
+ * connection together don't retry together.
+ */
+final class Backoff {
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final double multiplier;
+    private final double jitter;
+    private final Random random;
+
+    private int attempt = 0;
+
+    Backoff(long initialDelayMs, long maxDelayMs, double multiplier, double jitter, Random random) {
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.random = random;
+    }
+
+    /**
+     * @return the delay before the next attempt in milliseconds
+     */
+    long next() {
+        double delay = Math.min(initialDelayMs * Math.pow(multiplier, attempt), maxDelayMs);
+        attempt++;
+
+        delay *= 1.0 + jitter * (2 * random.nextDouble() - 1);
+        return Math.max(0, (long) delay);
+    }
+
+    /**
+     * @return the number of delays given since the last reset
+     */
+    int getAttempt() {
+        return attempt;
+    }
+
+    void reset() {
+        attempt = 0;
+    }
+}
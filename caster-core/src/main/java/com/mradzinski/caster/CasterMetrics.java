@@ -0,0 +1,433 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Quality of experience metrics of the cast playback: startup time, rebuffering, seek-to-resume
+ * latency, idle reasons, time spent in every {@link PlaybackStateMachine.State} and the round-trip
+ * latency of every command sent to the receiver. It's fed on the main thread by Caster and
+ * CasterPlayer, while {@link #snapshot()} can be polled from any thread. All durations are
+ * in milliseconds.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CasterMetrics {
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({COMMAND_LOAD, COMMAND_QUEUE_LOAD, COMMAND_QUEUE_INSERT, COMMAND_PLAY, COMMAND_PAUSE, COMMAND_SEEK,
+            COMMAND_SET_VOLUME, COMMAND_SET_PLAYBACK_RATE, COMMAND_QUEUE_REMOVE, COMMAND_QUEUE_REORDER,
+            COMMAND_QUEUE_UPDATE})
+    public @interface Command {}
+    public static final int COMMAND_LOAD = 0;
+    public static final int COMMAND_QUEUE_LOAD = 1;
+    public static final int COMMAND_QUEUE_INSERT = 2;
+    public static final int COMMAND_PLAY = 3;
+    public static final int COMMAND_PAUSE = 4;
+    public static final int COMMAND_SEEK = 5;
+    public static final int COMMAND_SET_VOLUME = 6;
+    public static final int COMMAND_SET_PLAYBACK_RATE = 7;
+    public static final int COMMAND_QUEUE_REMOVE = 8;
+    public static final int COMMAND_QUEUE_REORDER = 9;
+    public static final int COMMAND_QUEUE_UPDATE = 10;
+    public static final int COMMAND_COUNT = 11;
+
+    public static final int NO_STATUS_CODE = Integer.MIN_VALUE;
+
+    private static final long NONE = -1;
+    private static final int IDLE_REASON_COUNT = 5;
+
+    private final Histogram startupTime = new Histogram();
+    private final Histogram rebufferDuration = new Histogram();
+    private final Histogram seekResumeLatency = new Histogram();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLongArray idleReasonCounts = new AtomicLongArray(IDLE_REASON_COUNT);
+    private final AtomicLongArray timeInState = new AtomicLongArray(PlaybackStateMachine.STATE_COUNT);
+
+    private final Histogram[] commandLatency = new Histogram[COMMAND_COUNT];
+    private final AtomicLongArray commandSuccessCounts = new AtomicLongArray(COMMAND_COUNT);
+    private final AtomicLongArray commandFailureCounts = new AtomicLongArray(COMMAND_COUNT);
+    private final AtomicIntegerArray lastCommandStatusCodes = new AtomicIntegerArray(COMMAND_COUNT);
+    private final ListenerSet<OnCommandResultListener> onCommandResultListeners = new ListenerSet<>();
+    private final Clock clock;
+
+    private volatile int currentState = PlaybackStateMachine.STATE_UNKNOWN;
+    private volatile long currentStateEnteredAt = NONE;
+
+    // Only touched on the main thread
+    private long loadRequestedAt = NONE;
+    private long seekRequestedAt = NONE;
+    private long stallStartedAt = NONE;
+
+    CasterMetrics(Clock clock) {
+        this.clock = clock;
+
+        for (int i = 0; i < COMMAND_COUNT; i++) {
+            commandLatency[i] = new Histogram();
+            lastCommandStatusCodes.set(i, NO_STATUS_CODE);
+        }
+    }
+
+    /**
+     * Adds an {@link OnCommandResultListener}, which is called on the main thread with the status code
+     * and the round-trip latency of every command result.
+     *
+     * @param onCommandResultListener An instance of {@link OnCommandResultListener}
+     */
+    public void addOnCommandResultListener(@NonNull OnCommandResultListener onCommandResultListener) {
+        onCommandResultListeners.add(onCommandResultListener);
+    }
+
+    public void removeOnCommandResultListener(@NonNull OnCommandResultListener onCommandResultListener) {
+        onCommandResultListeners.remove(onCommandResultListener);
+    }
+
+    /**
+     * Times a command from now until its result arrives. A {@link MediaClient.PendingCommand} accepts
+     * only one listener, so a listener which needs the result too must be given here.
+     *
+     * @param pendingCommand The pending result of the command, nothing is done if null
+     * @param next Listener called with the result once it's recorded
+     */
+    @MainThread
+    void trackCommand(@Command int command, @Nullable MediaClient.PendingCommand pendingCommand,
+                      @Nullable MediaClient.ResultListener next) {
+        if (pendingCommand == null) return;
+
+        pendingCommand.setResultListener(new CommandTimer(command, clock.now(), next));
+    }
+
+    private void onCommandResult(@Command int command, int statusCode, boolean success, long latency) {
+        commandLatency[command].record(latency);
+        lastCommandStatusCodes.set(command, statusCode);
+
+        if (success) {
+            commandSuccessCounts.incrementAndGet(command);
+        } else {
+            commandFailureCounts.incrementAndGet(command);
+        }
+
+        for (Object listener : onCommandResultListeners.getListeners()) {
+            ((OnCommandResultListener) listener).onCommandResult(command, statusCode, latency);
+        }
+    }
+
+    /**
+     * Called when a media or a queue load is sent to the receiver.
+     */
+    @MainThread
+    void onLoadRequested(long timestamp) {
+        loadCount.incrementAndGet();
+        loadRequestedAt = timestamp;
+        seekRequestedAt = NONE;
+        stallStartedAt = NONE;
+    }
+
+    /**
+     * Called when a seek is sent to the receiver. Only seeks requested while playing are measured,
+     * since a paused media doesn't resume on its own.
+     */
+    @MainThread
+    void onSeekRequested(long timestamp) {
+        if (loadRequestedAt != NONE) return;
+
+        int state = currentState;
+        if (state != PlaybackStateMachine.STATE_PLAYING && state != PlaybackStateMachine.STATE_BUFFERING) return;
+
+        // A stall interrupted by a seek is measured as part of the seek
+        stallStartedAt = NONE;
+        seekRequestedAt = timestamp;
+    }
+
+    /**
+     * Called on every transition of the {@link PlaybackStateMachine}.
+     *
+     * @param idleReason The idle reason of the status update which caused the transition
+     */
+    @MainThread
+    void onPlaybackStateChanged(@PlaybackStateMachine.State int previousState,
+                                @PlaybackStateMachine.State int newState, int idleReason, long timestamp) {
+        long enteredAt = currentStateEnteredAt;
+        if (enteredAt != NONE) timeInState.addAndGet(previousState, Math.max(0, timestamp - enteredAt));
+
+        currentStateEnteredAt = timestamp;
+        currentState = newState;
+
+        if (previousState == PlaybackStateMachine.STATE_BUFFERING && stallStartedAt != NONE) {
+            rebufferDuration.record(timestamp - stallStartedAt);
+            stallStartedAt = NONE;
+        }
+
+        switch (newState) {
+            case PlaybackStateMachine.STATE_PLAYING:
+                if (loadRequestedAt != NONE) {
+                    startupTime.record(timestamp - loadRequestedAt);
+                    loadRequestedAt = NONE;
+                } else if (seekRequestedAt != NONE) {
+                    seekResumeLatency.record(timestamp - seekRequestedAt);
+                    seekRequestedAt = NONE;
+                }
+                break;
+
+            case PlaybackStateMachine.STATE_BUFFERING:
+                if (previousState == PlaybackStateMachine.STATE_PLAYING
+                        && loadRequestedAt == NONE && seekRequestedAt == NONE) {
+                    stallStartedAt = timestamp;
+                }
+                break;
+
+            case PlaybackStateMachine.STATE_PAUSED:
+                seekRequestedAt = NONE;
+                break;
+
+            case PlaybackStateMachine.STATE_FINISHED:
+            case PlaybackStateMachine.STATE_CANCELLED:
+            case PlaybackStateMachine.STATE_INTERRUPTED:
+            case PlaybackStateMachine.STATE_ERROR:
+                if (idleReason >= 0 && idleReason < IDLE_REASON_COUNT) idleReasonCounts.incrementAndGet(idleReason);
+                loadRequestedAt = NONE;
+                seekRequestedAt = NONE;
+                break;
+        }
+    }
+
+    /**
+     * Clears every metric. The current playback state is kept.
+     */
+    public void reset() {
+        startupTime.reset();
+        rebufferDuration.reset();
+        seekResumeLatency.reset();
+        loadCount.set(0);
+
+        for (int i = 0; i < IDLE_REASON_COUNT; i++) idleReasonCounts.set(i, 0);
+        for (int i = 0; i < PlaybackStateMachine.STATE_COUNT; i++) timeInState.set(i, 0);
+
+        for (int i = 0; i < COMMAND_COUNT; i++) {
+            commandLatency[i].reset();
+            commandSuccessCounts.set(i, 0);
+            commandFailureCounts.set(i, 0);
+            lastCommandStatusCodes.set(i, NO_STATUS_CODE);
+        }
+
+        if (currentStateEnteredAt != NONE) currentStateEnteredAt = clock.now();
+    }
+
+    /**
+     * Copies the current metrics. The time spent in the current state so far is included.
+     *
+     * @return a new {@link Snapshot}, which can be shipped to a backend
+     */
+    public @NonNull Snapshot snapshot() {
+        long[] stateTimes = new long[PlaybackStateMachine.STATE_COUNT];
+        for (int i = 0; i < stateTimes.length; i++) stateTimes[i] = timeInState.get(i);
+
+        int state = currentState;
+        long enteredAt = currentStateEnteredAt;
+        if (enteredAt != NONE) stateTimes[state] += Math.max(0, clock.now() - enteredAt);
+
+        long[] idleReasons = new long[IDLE_REASON_COUNT];
+        for (int i = 0; i < idleReasons.length; i++) idleReasons[i] = idleReasonCounts.get(i);
+
+        Histogram.Snapshot[] commandLatencies = new Histogram.Snapshot[COMMAND_COUNT];
+        long[] commandSuccesses = new long[COMMAND_COUNT];
+        long[] commandFailures = new long[COMMAND_COUNT];
+        int[] commandStatusCodes = new int[COMMAND_COUNT];
+
+        for (int i = 0; i < COMMAND_COUNT; i++) {
+            commandLatencies[i] = commandLatency[i].snapshot();
+            commandSuccesses[i] = commandSuccessCounts.get(i);
+            commandFailures[i] = commandFailureCounts.get(i);
+            commandStatusCodes[i] = lastCommandStatusCodes.get(i);
+        }
+
+        return new Snapshot(loadCount.get(), startupTime.snapshot(), rebufferDuration.snapshot(),
+                seekResumeLatency.snapshot(), idleReasons, stateTimes, commandLatencies, commandSuccesses,
+                commandFailures, commandStatusCodes);
+    }
+
+    public static String commandToString(@Command int command) {
+        switch (command) {
+            case COMMAND_LOAD: return "LOAD";
+            case COMMAND_QUEUE_LOAD: return "QUEUE_LOAD";
+            case COMMAND_QUEUE_INSERT: return "QUEUE_INSERT";
+            case COMMAND_PLAY: return "PLAY";
+            case COMMAND_PAUSE: return "PAUSE";
+            case COMMAND_SEEK: return "SEEK";
+            case COMMAND_SET_VOLUME: return "SET_VOLUME";
+            case COMMAND_SET_PLAYBACK_RATE: return "SET_PLAYBACK_RATE";
+            case COMMAND_QUEUE_REMOVE: return "QUEUE_REMOVE";
+            case COMMAND_QUEUE_REORDER: return "QUEUE_REORDER";
+            case COMMAND_QUEUE_UPDATE: return "QUEUE_UPDATE";
+            default: return "UNKNOWN";
+        }
+    }
+
+    private final class CommandTimer implements MediaClient.ResultListener {
+        private final int command;
+        private final long sentAt;
+        private final MediaClient.ResultListener next;
+
+        CommandTimer(int command, long sentAt, MediaClient.ResultListener next) {
+            this.command = command;
+            this.sentAt = sentAt;
+            this.next = next;
+        }
+
+        @Override
+        public void onResult(int statusCode, boolean success) {
+            onCommandResult(command, statusCode, success, clock.now() - sentAt);
+
+            if (next != null) next.onResult(statusCode, success);
+        }
+    }
+
+    public interface OnCommandResultListener {
+        /**
+         * @param statusCode One of the CommonStatusCodes or CastStatusCodes constants
+         * @param latency Time from the moment the command was sent until its result arrived
+         */
+        void onCommandResult(@Command int command, int statusCode, long latency);
+    }
+
+    /**
+     * Immutable copy of {@link CasterMetrics}. Values recorded concurrently with the copy may be
+     * partially reflected.
+     */
+    public static final class Snapshot {
+        private final long loadCount;
+        private final Histogram.Snapshot startupTime;
+        private final Histogram.Snapshot rebufferDuration;
+        private final Histogram.Snapshot seekResumeLatency;
+        private final long[] idleReasonCounts;
+        private final long[] timeInState;
+        private final Histogram.Snapshot[] commandLatency;
+        private final long[] commandSuccessCounts;
+        private final long[] commandFailureCounts;
+        private final int[] lastCommandStatusCodes;
+
+        Snapshot(long loadCount, Histogram.Snapshot startupTime, Histogram.Snapshot rebufferDuration,
+                 Histogram.Snapshot seekResumeLatency, long[] idleReasonCounts, long[] timeInState,
+                 Histogram.Snapshot[] commandLatency, long[] commandSuccessCounts, long[] commandFailureCounts,
+                 int[] lastCommandStatusCodes) {
+            this.loadCount = loadCount;
+            this.startupTime = startupTime;
+            this.rebufferDuration = rebufferDuration;
+            this.seekResumeLatency = seekResumeLatency;
+            this.idleReasonCounts = idleReasonCounts;
+            this.timeInState = timeInState;
+            this.commandLatency = commandLatency;
+            this.commandSuccessCounts = commandSuccessCounts;
+            this.commandFailureCounts = commandFailureCounts;
+            this.lastCommandStatusCodes = lastCommandStatusCodes;
+        }
+
+        /**
+         * @return the number of media and queue loads sent to the receiver
+         */
+        public long getLoadCount() {
+            return loadCount;
+        }
+
+        /**
+         * @return the time from a load request until the media started playing
+         */
+        public Histogram.Snapshot getStartupTime() {
+            return startupTime;
+        }
+
+        /**
+         * @return the duration of every stall, i.e. buffering which interrupted a playing media
+         * without being caused by a load or a seek
+         */
+        public Histogram.Snapshot getRebufferDuration() {
+            return rebufferDuration;
+        }
+
+        public long getRebufferCount() {
+            return rebufferDuration.getCount();
+        }
+
+        /**
+         * @return the time spent stalled divided by the time spent playing or stalled, between 0.0 and 1.0
+         */
+        public double getRebufferRatio() {
+            long stalled = rebufferDuration.getSum();
+            long total = stalled + timeInState[PlaybackStateMachine.STATE_PLAYING];
+
+            return total == 0 ? 0 : (double) stalled / total;
+        }
+
+        /**
+         * @return the time from a seek requested while playing until the media played again
+         */
+        public Histogram.Snapshot getSeekResumeLatency() {
+            return seekResumeLatency;
+        }
+
+        /**
+         * @param idleReason One of the MediaClient.IDLE_REASON_* constants
+         * @return the number of times the media went idle for the given reason
+         */
+        public long getIdleReasonCount(int idleReason) {
+            if (idleReason < 0 || idleReason >= idleReasonCounts.length) return 0;
+
+            return idleReasonCounts[idleReason];
+        }
+
+        /**
+         * @return the number of errors per load, 0 if nothing was loaded
+         */
+        public double getErrorRate() {
+            return loadCount == 0 ? 0 : (double) idleReasonCounts[MediaClient.IDLE_REASON_ERROR] / loadCount;
+        }
+
+        /**
+         * @param state One of the {@link PlaybackStateMachine.State} constants
+         * @return the total time spent in the given state
+         */
+        public long getTimeInState(@PlaybackStateMachine.State int state) {
+            if (state < 0 || state >= timeInState.length) return 0;
+
+            return timeInState[state];
+        }
+
+        /**
+         * @param command One of the {@link Command} constants
+         * @return the time from the moment the command was sent until its result arrived
+         */
+        public Histogram.Snapshot getCommandLatency(@Command int command) {
+            return commandLatency[command];
+        }
+
+        /**
+         * @param command One of the {@link Command} constants
+         * @return the number of successful results of the command
+         */
+        public long getCommandSuccessCount(@Command int command) {
+            return commandSuccessCounts[command];
+        }
+
+        /**
+         * @param command One of the {@link Command} constants
+         * @return the number of failed results of the command, e.g. timeouts or results replaced by a newer command
+         */
+        public long getCommandFailureCount(@Command int command) {
+            return commandFailureCounts[command];
+        }
+
+        /**
+         * @param command One of the {@link Command} constants
+         * @return the status code of the latest result of the command or {@link #NO_STATUS_CODE}
+         */
+        public int getLastCommandStatusCode(@Command int command) {
+            return lastCommandStatusCodes[command];
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.mradzinski.caster;
+
+class CasterMetricsNoOp extends CasterMetrics {
+    CasterMetricsNoOp() {
+        super(Clock.SYSTEM);
+    }
+
+    @Override
+    void onLoadRequested(long timestamp) {
+        //no-op
+    }
+
+    @Override
+    void onSeekRequested(long timestamp) {
+        //no-op
+    }
+
+    @Override
+    void trackCommand(int command, MediaClient.PendingCommand pendingCommand, MediaClient.ResultListener next) {
+        if (pendingCommand != null && next != null) pendingCommand.setResultListener(next);
+    }
+
+    @Override
+    void onPlaybackStateChanged(int previousState, int newState, int idleReason, long timestamp) {
+        //no-op
+    }
+}
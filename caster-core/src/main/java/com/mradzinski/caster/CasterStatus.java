@@ -0,0 +1,106 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Immutable snapshot of the receiver's media status. A new snapshot is built once per status update
+ * and shared by every player query and listener, so it can be read from any thread
+ * at no cost.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CasterStatus {
+    public static final long UNKNOWN_DURATION = -1L;
+
+    public static final CasterStatus EMPTY = new CasterStatus(MediaClient.PLAYER_STATE_UNKNOWN,
+            MediaClient.IDLE_REASON_NONE, 0, UNKNOWN_DURATION, 1.0, 0, null, 0);
+
+    private final int playerState;
+    private final int idleReason;
+    private final long position;
+    private final long duration;
+    private final double playbackRate;
+    private final double volume;
+    private final String contentId;
+    private final long updatedAt;
+
+    CasterStatus(int playerState, int idleReason, long position, long duration, double playbackRate,
+                 double volume, @Nullable String contentId, long updatedAt) {
+        this.playerState = playerState;
+        this.idleReason = idleReason;
+        this.position = position;
+        this.duration = duration;
+        this.playbackRate = playbackRate;
+        this.volume = volume;
+        this.contentId = contentId;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * @return One of the MediaClient.PLAYER_STATE_* constants
+     */
+    public int getPlayerState() {
+        return playerState;
+    }
+
+    /**
+     * @return One of the MediaClient.IDLE_REASON_* constants
+     */
+    public int getIdleReason() {
+        return idleReason;
+    }
+
+    /**
+     * @return The stream position in milliseconds at the moment of the update
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return The stream duration in milliseconds or {@link #UNKNOWN_DURATION}
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public double getPlaybackRate() {
+        return playbackRate;
+    }
+
+    /**
+     * @return The stream volume, between 0.0 and 1.0
+     */
+    public double getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return The content id (usually the URL) of the current media or null if there's none
+     */
+    public @Nullable String getContentId() {
+        return contentId;
+    }
+
+    /**
+     * @return The {@link Clock} time at which this snapshot was built
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public boolean isPlaying() {
+        return playerState == MediaClient.PLAYER_STATE_PLAYING;
+    }
+
+    public boolean isPaused() {
+        return playerState == MediaClient.PLAYER_STATE_PAUSED;
+    }
+
+    public boolean isBuffering() {
+        return playerState == MediaClient.PLAYER_STATE_BUFFERING;
+    }
+
+    public boolean isFinished() {
+        return playerState == MediaClient.PLAYER_STATE_IDLE && idleReason == MediaClient.IDLE_REASON_FINISHED;
+    }
+}
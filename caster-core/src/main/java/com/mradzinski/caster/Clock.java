@@ -0,0 +1,16 @@
+package com.mradzinski.caster;
+
+/**
+ * Source of monotonic timestamps, in milliseconds. Every timestamp given to the core classes must
+ * come from the same clock.
+ */
+public interface Clock {
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long now() {
+            return System.nanoTime() / 1000000L;
+        }
+    };
+
+    long now();
+}
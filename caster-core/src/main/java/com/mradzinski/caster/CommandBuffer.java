@@ -0,0 +1,145 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+/**
+ * Keeps the commands given while the receiver can't be reached, collapsed to their final effect:
+ * the latest play or pause, the latest seek and the latest volume. So it never holds more than three
+ * commands, however many were given. They're replayed once a client is back, and the ones older
+ * than the age limit are dropped then instead of reaching the receiver late.
+ */
+@MainThread
+final class CommandBuffer {
+    static final int INTENT_NONE = 0;
+    static final int INTENT_PLAY = 1;
+    static final int INTENT_PAUSE = 2;
+
+    static final long DEFAULT_MAX_AGE_MS = 30000L;
+
+    private final Clock clock;
+    private final CasterMetrics metrics;
+    private long maxAgeMs = DEFAULT_MAX_AGE_MS;
+
+    private int playIntent = INTENT_NONE;
+    private long playIntentAt;
+    private boolean hasSeek = false;
+    private long seekPosition;
+    private long seekAt;
+    private boolean hasVolume = false;
+    private double volume;
+    private long volumeAt;
+
+    private long collapsedCount = 0;
+    private long expiredCount = 0;
+
+    CommandBuffer(Clock clock, CasterMetrics metrics) {
+        this.clock = clock;
+        this.metrics = metrics;
+    }
+
+    void setMaxAge(long maxAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    void play() {
+        setPlayIntent(INTENT_PLAY);
+    }
+
+    void pause() {
+        setPlayIntent(INTENT_PAUSE);
+    }
+
+    /**
+     * @return the buffered play or pause, {@link #INTENT_NONE} if there's none
+     */
+    int getPlayIntent() {
+        return playIntent;
+    }
+
+    private void setPlayIntent(int intent) {
+        if (playIntent != INTENT_NONE) collapsedCount++;
+
+        playIntent = intent;
+        playIntentAt = clock.now();
+    }
+
+    void seek(long position) {
+        if (hasSeek) collapsedCount++;
+
+        hasSeek = true;
+        seekPosition = position;
+        seekAt = clock.now();
+    }
+
+    void setVolume(double volume) {
+        if (hasVolume) collapsedCount++;
+
+        hasVolume = true;
+        this.volume = volume;
+        volumeAt = clock.now();
+    }
+
+    boolean isEmpty() {
+        return playIntent == INTENT_NONE && !hasSeek && !hasVolume;
+    }
+
+    /**
+     * Sends the buffered commands which aren't too old, the seek first so playing resumes at the
+     * right position, and empties the buffer.
+     *
+     * @return the number of commands sent
+     */
+    int replay(@NonNull MediaClient mediaClient) {
+        long now = clock.now();
+        int sent = 0;
+
+        if (hasSeek && isFresh(seekAt, now)) {
+            metrics.trackCommand(CasterMetrics.COMMAND_SEEK, mediaClient.seek(seekPosition), null);
+            sent++;
+        }
+
+        if (hasVolume && isFresh(volumeAt, now)) {
+            metrics.trackCommand(CasterMetrics.COMMAND_SET_VOLUME, mediaClient.setStreamVolume(volume), null);
+            sent++;
+        }
+
+        if (playIntent == INTENT_PLAY && isFresh(playIntentAt, now)) {
+            metrics.trackCommand(CasterMetrics.COMMAND_PLAY, mediaClient.play(), null);
+            sent++;
+        } else if (playIntent == INTENT_PAUSE && isFresh(playIntentAt, now)) {
+            metrics.trackCommand(CasterMetrics.COMMAND_PAUSE, mediaClient.pause(), null);
+            sent++;
+        }
+
+        clear();
+        return sent;
+    }
+
+    private boolean isFresh(long timestamp, long now) {
+        if (now - timestamp <= maxAgeMs) return true;
+
+        expiredCount++;
+        return false;
+    }
+
+    void clear() {
+        playIntent = INTENT_NONE;
+        hasSeek = false;
+        hasVolume = false;
+    }
+
+    /**
+     * @return the number of buffered commands replaced by a later one
+     */
+    long getCollapsedCount() {
+        return collapsedCount;
+    }
+
+    /**
+     * @return the number of buffered commands dropped for being too old
+     */
+    long getExpiredCount() {
+        return expiredCount;
+    }
+}
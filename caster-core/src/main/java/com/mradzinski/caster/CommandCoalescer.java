@@ -0,0 +1,118 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+
+/**
+ * Keeps at most one command of a kind in flight. Commands submitted while another one is in flight,
+ * or before the minimum interval since the last one has passed, are collapsed into the latest value.
+ */
+abstract class CommandCoalescer {
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final Scheduler scheduler;
+    private final Clock clock;
+    private final CasterMetrics metrics;
+    private final int command;
+    private long minIntervalMs;
+
+    private boolean inFlight = false;
+    private boolean hasPending = false;
+    private boolean scheduled = false;
+    private double pendingValue;
+    private long lastSentAt = NEVER;
+    // Results of commands sent before a reset don't tell anything about the commands sent after it
+    private int generation = 0;
+
+    private volatile long collapsedCount = 0;
+
+    private final Runnable sendRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduled = false;
+            maybeSend();
+        }
+    };
+
+    CommandCoalescer(Scheduler scheduler, Clock clock, CasterMetrics metrics, @CasterMetrics.Command int command,
+                     long minIntervalMs) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.metrics = metrics;
+        this.command = command;
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    /**
+     * Sends the command with the given value.
+     *
+     * @return the pending result of the command or null if it couldn't be sent
+     */
+    @Nullable
+    abstract MediaClient.PendingCommand send(double value);
+
+    @MainThread
+    void submit(double value) {
+        if (hasPending) collapsedCount++;
+
+        pendingValue = value;
+        hasPending = true;
+
+        maybeSend();
+    }
+
+    @MainThread
+    void reset() {
+        scheduler.cancel(sendRunnable);
+        scheduled = false;
+        inFlight = false;
+        hasPending = false;
+        generation++;
+    }
+
+    void setMinInterval(long minIntervalMs) {
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    long getCollapsedCount() {
+        return collapsedCount;
+    }
+
+    private void maybeSend() {
+        if (inFlight || !hasPending || scheduled) return;
+
+        long now = clock.now();
+        long wait = lastSentAt == NEVER ? 0 : lastSentAt + minIntervalMs - now;
+
+        if (wait > 0) {
+            scheduled = true;
+            scheduler.postDelayed(sendRunnable, wait);
+            return;
+        }
+
+        hasPending = false;
+        lastSentAt = now;
+
+        MediaClient.PendingCommand pendingCommand = send(pendingValue);
+        if (pendingCommand == null) return;
+
+        inFlight = true;
+        metrics.trackCommand(command, pendingCommand, new ResultListener(generation));
+    }
+
+    private final class ResultListener implements MediaClient.ResultListener {
+        private final int generation;
+
+        ResultListener(int generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onResult(int statusCode, boolean success) {
+            if (generation != CommandCoalescer.this.generation) return;
+
+            inFlight = false;
+            maybeSend();
+        }
+    }
+}
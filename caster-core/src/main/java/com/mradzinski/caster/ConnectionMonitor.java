@@ -0,0 +1,293 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Random;
+
+/**
+ * Watches the health of the connection with the receiver. While connected it sends a status request
+ * every {@link #HEARTBEAT_INTERVAL_MS} and measures its round-trip time, which gives the
+ * {@link Quality} of the link. When the session is suspended it tries to reconnect with exponential
+ * backoff and jitter, until the session comes back or {@link #MAX_RECONNECT_ATTEMPTS} are made.
+ *
+ * <p>Must be used on the thread which runs the {@link Scheduler}, the getters can be read from
+ * any thread.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ConnectionMonitor {
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({QUALITY_DISCONNECTED, QUALITY_GOOD, QUALITY_FAIR, QUALITY_POOR, QUALITY_SUSPENDED})
+    public @interface Quality {}
+    public static final int QUALITY_DISCONNECTED = 0;
+    public static final int QUALITY_GOOD = 1;
+    public static final int QUALITY_FAIR = 2;
+    public static final int QUALITY_POOR = 3;
+    public static final int QUALITY_SUSPENDED = 4;
+
+    public static final long UNKNOWN_ROUND_TRIP_TIME = -1L;
+
+    public static final long HEARTBEAT_INTERVAL_MS = 5000L;
+    public static final long HEARTBEAT_TIMEOUT_MS = 10000L;
+    public static final long GOOD_ROUND_TRIP_TIME_MS = 150L;
+    public static final long FAIR_ROUND_TRIP_TIME_MS = 500L;
+    public static final int MAX_RECONNECT_ATTEMPTS = 8;
+
+    private static final long RECONNECT_INITIAL_DELAY_MS = 1000L;
+    private static final long RECONNECT_MAX_DELAY_MS = 30000L;
+    private static final double RECONNECT_MULTIPLIER = 2.0;
+    private static final double RECONNECT_JITTER = 0.2;
+    private static final int POOR_AFTER_FAILURES = 2;
+    // Weight of the latest sample in the smoothed round-trip time
+    private static final double SMOOTHING = 0.25;
+
+    /**
+     * Tries to bring back a lost session, e.g. by selecting the last route again.
+     */
+    interface Reconnector {
+        /**
+         * @return true if an attempt was started, false if it couldn't be
+         */
+        boolean reconnect();
+    }
+
+    private final Scheduler scheduler;
+    private final Clock clock;
+    private final Reconnector reconnector;
+    private final Backoff backoff;
+    private final ListenerSet<Listener> listeners = new ListenerSet<>();
+
+    private MediaClient mediaClient;
+    private boolean heartbeatEnabled = true;
+    private boolean reconnecting = false;
+    private int consecutiveFailures = 0;
+    private int heartbeatId = 0;
+    private long heartbeatSentAt;
+
+    private volatile int quality = QUALITY_DISCONNECTED;
+    private volatile long roundTripTime = UNKNOWN_ROUND_TRIP_TIME;
+
+    private final Runnable heartbeat = new Runnable() {
+        @Override
+        public void run() {
+            sendHeartbeat();
+        }
+    };
+
+    private final Runnable heartbeatTimeout = new Runnable() {
+        @Override
+        public void run() {
+            onHeartbeatFailed();
+        }
+    };
+
+    private final Runnable reconnect = new Runnable() {
+        @Override
+        public void run() {
+            attemptReconnect();
+        }
+    };
+
+    ConnectionMonitor(Scheduler scheduler, Clock clock, Reconnector reconnector, Random random) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.reconnector = reconnector;
+        this.backoff = new Backoff(RECONNECT_INITIAL_DELAY_MS, RECONNECT_MAX_DELAY_MS, RECONNECT_MULTIPLIER,
+                RECONNECT_JITTER, random);
+    }
+
+    /**
+     * @return the current {@link Quality} of the connection
+     */
+    public @Quality int getQuality() {
+        return quality;
+    }
+
+    /**
+     * @return the smoothed round-trip time of the status requests in milliseconds or
+     * {@link #UNKNOWN_ROUND_TRIP_TIME}
+     */
+    public long getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    ListenerSet<Listener> getListeners() {
+        return listeners;
+    }
+
+    boolean isReconnecting() {
+        return reconnecting;
+    }
+
+    void onConnected(@NonNull MediaClient mediaClient) {
+        scheduler.cancel(reconnect);
+        backoff.reset();
+        reconnecting = false;
+
+        this.mediaClient = mediaClient;
+        consecutiveFailures = 0;
+        setQuality(qualityOf(roundTripTime));
+
+        restartHeartbeat();
+    }
+
+    void onSuspended() {
+        stopHeartbeat();
+        mediaClient = null;
+
+        reconnecting = true;
+        setQuality(QUALITY_SUSPENDED);
+        scheduleReconnect();
+    }
+
+    void onDisconnected() {
+        stopHeartbeat();
+        scheduler.cancel(reconnect);
+        backoff.reset();
+
+        reconnecting = false;
+        mediaClient = null;
+        roundTripTime = UNKNOWN_ROUND_TRIP_TIME;
+        setQuality(QUALITY_DISCONNECTED);
+    }
+
+    /**
+     * Heartbeats cost a request every few seconds, they can be paused while nobody looks at the app.
+     */
+    void setHeartbeatEnabled(boolean enabled) {
+        if (heartbeatEnabled == enabled) return;
+
+        heartbeatEnabled = enabled;
+        restartHeartbeat();
+    }
+
+    private void restartHeartbeat() {
+        stopHeartbeat();
+        if (heartbeatEnabled && mediaClient != null) scheduler.postDelayed(heartbeat, 0);
+    }
+
+    private void stopHeartbeat() {
+        heartbeatId++;
+        scheduler.cancel(heartbeat);
+        scheduler.cancel(heartbeatTimeout);
+    }
+
+    private void sendHeartbeat() {
+        if (mediaClient == null || !heartbeatEnabled) return;
+
+        final int id = ++heartbeatId;
+        heartbeatSentAt = clock.now();
+
+        // Posted first, the result may come before requestStatus() returns
+        scheduler.postDelayed(heartbeatTimeout, HEARTBEAT_TIMEOUT_MS);
+
+        MediaClient.PendingCommand pendingCommand = mediaClient.requestStatus();
+        if (pendingCommand == null) {
+            scheduler.cancel(heartbeatTimeout);
+            onHeartbeatFailed();
+            return;
+        }
+
+        pendingCommand.setResultListener(new MediaClient.ResultListener() {
+            @Override
+            public void onResult(int statusCode, boolean success) {
+                if (id != heartbeatId) return;
+
+                scheduler.cancel(heartbeatTimeout);
+
+                if (success) {
+                    onHeartbeatSucceeded(clock.now() - heartbeatSentAt);
+                } else {
+                    onHeartbeatFailed();
+                }
+            }
+        });
+    }
+
+    private void onHeartbeatSucceeded(long sample) {
+        heartbeatId++;
+
+        long previous = roundTripTime;
+        roundTripTime = previous == UNKNOWN_ROUND_TRIP_TIME ? sample
+                : Math.round(previous + SMOOTHING * (sample - previous));
+
+        consecutiveFailures = 0;
+        setQuality(qualityOf(roundTripTime));
+
+        scheduler.postDelayed(heartbeat, HEARTBEAT_INTERVAL_MS);
+    }
+
+    private void onHeartbeatFailed() {
+        // Late results of this heartbeat are ignored
+        heartbeatId++;
+
+        if (++consecutiveFailures >= POOR_AFTER_FAILURES) setQuality(QUALITY_POOR);
+
+        scheduler.postDelayed(heartbeat, HEARTBEAT_INTERVAL_MS);
+    }
+
+    private void scheduleReconnect() {
+        scheduler.cancel(reconnect);
+
+        if (backoff.getAttempt() >= MAX_RECONNECT_ATTEMPTS) {
+            onDisconnected();
+            return;
+        }
+
+        scheduler.postDelayed(reconnect, backoff.next());
+    }
+
+    private void attemptReconnect() {
+        if (!reconnecting) return;
+
+        reconnector.reconnect();
+        // The next attempt is cancelled once the session is back
+        scheduleReconnect();
+    }
+
+    private static @Quality int qualityOf(long roundTripTime) {
+        if (roundTripTime == UNKNOWN_ROUND_TRIP_TIME || roundTripTime <= GOOD_ROUND_TRIP_TIME_MS) return QUALITY_GOOD;
+        if (roundTripTime <= FAIR_ROUND_TRIP_TIME_MS) return QUALITY_FAIR;
+
+        return QUALITY_POOR;
+    }
+
+    private void setQuality(@Quality int newQuality) {
+        if (quality == newQuality) return;
+
+        quality = newQuality;
+
+        for (Object listener : listeners.getListeners()) {
+            ((Listener) listener).onConnectionQualityChanged(newQuality, roundTripTime);
+        }
+    }
+
+    /**
+     * @return a readable name of the quality, e.g. for logs
+     */
+    public static @Nullable String qualityToString(@Quality int quality) {
+        switch (quality) {
+            case QUALITY_DISCONNECTED: return "disconnected";
+            case QUALITY_GOOD: return "good";
+            case QUALITY_FAIR: return "fair";
+            case QUALITY_POOR: return "poor";
+            case QUALITY_SUSPENDED: return "suspended";
+            default: return null;
+        }
+    }
+
+    public interface Listener {
+        void onConnectionQualityChanged(@Quality int quality, long roundTripTimeMs);
+    }
+}
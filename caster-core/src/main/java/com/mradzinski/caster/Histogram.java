@@ -0,0 +1,143 @@
+package com.mradzinski.caster;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram with fixed log-linear buckets (HDR-style): every power of two is split in
+ * {@link #SUB_BUCKET_COUNT} buckets, which keeps the relative error under 12.5%. Recording never
+ * allocates, only {@link #snapshot()} does.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) Math.max(0, value);
+        if (value > MAX_VALUE) value = MAX_VALUE;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+
+        return (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long currentMax;
+        do {
+            currentMax = max.get();
+        } while (value > currentMax && !max.compareAndSet(currentMax, value));
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) buckets.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) counts[i] = buckets.get(i);
+
+        return new Snapshot(counts, count.get(), sum.get(), max.get());
+    }
+
+    /**
+     * Immutable copy of a {@link Histogram}. Values recorded concurrently with the copy may be
+     * partially reflected.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile A value between 0 and 100
+         * @return the lower bound of the bucket holding the given percentile, 0 if there are no values
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long c : counts) total += c;
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(total * Math.max(0, Math.min(100, percentile)) / 100.0);
+            if (rank < 1) rank = 1;
+
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(bucketLowerBound(i), max);
+            }
+
+            return max;
+        }
+
+        /**
+         * @return the number of values recorded in each bucket, see {@link #getBucketLowerBound(int)}
+         */
+        public long[] getBucketCounts() {
+            return counts.clone();
+        }
+
+        public static long getBucketLowerBound(int index) {
+            return bucketLowerBound(index);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.mradzinski.caster;
+
+/**
+ * Copy-on-write set of listeners. Adding and removing copies the backing array, dispatching only
+ * reads the current array, so it doesn't lock nor allocate.
+ *
+ * <p>Dispatch like this:</p>
+ * <pre>
+ * Object[] listeners = set.getListeners();
+ * for (Object listener : listeners) ((Listener) listener).onEvent();
+ * </pre>
+ */
+final class ListenerSet<T> {
+    private static final Object[] EMPTY = new Object[0];
+
+    /**
+     * Implemented by listeners which wrap another one, so they can be found and removed
+     * through the listener they wrap.
+     */
+    interface Delegating {
+        Object getDelegate();
+    }
+
+    private volatile Object[] listeners = EMPTY;
+
+    synchronized boolean add(T listener) {
+        Object[] current = listeners;
+
+        for (Object l : current) {
+            if (matches(l, listener)) return false;
+        }
+
+        Object[] updated = new Object[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = listener;
+        listeners = updated;
+
+        return true;
+    }
+
+    synchronized boolean remove(T listener) {
+        Object[] current = listeners;
+
+        for (int i = 0; i < current.length; i++) {
+            if (matches(current[i], listener)) {
+                if (current.length == 1) {
+                    listeners = EMPTY;
+                } else {
+                    Object[] updated = new Object[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    listeners = updated;
+                }
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean matches(Object registered, Object listener) {
+        if (registered == listener) return true;
+
+        if (listener instanceof Delegating) listener = ((Delegating) listener).getDelegate();
+        if (registered instanceof Delegating) registered = ((Delegating) registered).getDelegate();
+
+        return registered == listener;
+    }
+
+    synchronized void clear() {
+        listeners = EMPTY;
+    }
+
+    Object[] getListeners() {
+        return listeners;
+    }
+
+    boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    int size() {
+        return listeners.length;
+    }
+}
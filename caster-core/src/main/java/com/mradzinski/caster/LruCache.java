@@ -0,0 +1,95 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache bounded to a number of entries, evicting the least recently used ones first. It counts its
+ * hits, misses and evictions. Safe to use from any thread.
+ */
+final class LruCache<K, V> {
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxSize;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * @param maxSize the maximum number of entries, 0 disables the cache
+     */
+    LruCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    synchronized @Nullable V get(@NonNull K key) {
+        V value = entries.get(key);
+
+        if (value != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+
+        return value;
+    }
+
+    synchronized void put(@NonNull K key, @NonNull V value) {
+        if (maxSize == 0) return;
+
+        entries.put(key, value);
+        trimToSize();
+    }
+
+    /**
+     * @return true if there was an entry for the key
+     */
+    synchronized boolean remove(@NonNull K key) {
+        return entries.remove(key) != null;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("The maximum size can't be negative: " + maxSize);
+
+        this.maxSize = maxSize;
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<K> iterator = entries.keySet().iterator();
+
+        // The first entries are the least recently used
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * The part of a Cast media client the core classes are built against. On a device it's backed by
+ * RemoteMediaClient, anywhere else it can be simulated. Player states and idle reasons have the same
+ * values as the MediaStatus constants.
+ */
+public interface MediaClient {
+    int PLAYER_STATE_UNKNOWN = 0;
+    int PLAYER_STATE_IDLE = 1;
+    int PLAYER_STATE_PLAYING = 2;
+    int PLAYER_STATE_PAUSED = 3;
+    int PLAYER_STATE_BUFFERING = 4;
+
+    int IDLE_REASON_NONE = 0;
+    int IDLE_REASON_FINISHED = 1;
+    int IDLE_REASON_CANCELED = 2;
+    int IDLE_REASON_INTERRUPTED = 3;
+    int IDLE_REASON_ERROR = 4;
+
+    /**
+     * Builds a snapshot of the receiver's media status.
+     *
+     * @param timestamp Time of the snapshot, see {@link CasterStatus#getUpdatedAt()}
+     * @return the snapshot or null if there's no media status yet
+     */
+    @Nullable CasterStatus getStatus(long timestamp);
+
+    /**
+     * @return the stream position in milliseconds, extrapolated from the last status update
+     */
+    long getApproximateStreamPosition();
+
+    /**
+     * Each command returns the pending result of the request or null if it couldn't be sent.
+     */
+    @Nullable PendingCommand play();
+
+    @Nullable PendingCommand pause();
+
+    @Nullable PendingCommand seek(long position);
+
+    @Nullable PendingCommand setStreamVolume(double volume);
+
+    @Nullable PendingCommand setPlaybackRate(double rate);
+
+    @Nullable PendingCommand requestStatus();
+
+    void addListener(@NonNull Listener listener);
+
+    void removeListener(@NonNull Listener listener);
+
+    /**
+     * @param intervalMs Interval between two progress updates, in milliseconds
+     */
+    void addProgressListener(@NonNull ProgressListener progressListener, long intervalMs);
+
+    void removeProgressListener(@NonNull ProgressListener progressListener);
+
+    interface Listener {
+        void onStatusUpdated();
+        void onQueueStatusUpdated();
+        void onPreloadStatusUpdated();
+    }
+
+    interface ProgressListener {
+        void onProgressUpdated(long progressMs, long durationMs);
+    }
+
+    /**
+     * Result of a command which is still in flight. Only one {@link ResultListener} can be set.
+     */
+    interface PendingCommand {
+        void setResultListener(@NonNull ResultListener resultListener);
+    }
+
+    interface ResultListener {
+        /**
+         * @param statusCode One of the CommonStatusCodes or CastStatusCodes constants
+         */
+        void onResult(int statusCode, boolean success);
+    }
+}
@@ -0,0 +1,52 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of strings packed in a single one, separated by line feeds. A single string is stored as
+ * it is and none as null, so the usual one or two image URLs of a media cost no list nor array.
+ * The strings can't contain line feeds, which URLs never do.
+ */
+final class PackedStrings {
+    static final char SEPARATOR = '\n';
+
+    private PackedStrings() { /* no-op */ }
+
+    static @NonNull String append(@Nullable String packed, @NonNull String string) {
+        if (string.indexOf(SEPARATOR) >= 0) throw new IllegalArgumentException("Line feeds can't be packed: " + string);
+
+        return packed == null ? string : packed + SEPARATOR + string;
+    }
+
+    static int size(@Nullable String packed) {
+        if (packed == null) return 0;
+
+        int size = 1;
+        for (int i = packed.indexOf(SEPARATOR); i >= 0; i = packed.indexOf(SEPARATOR, i + 1)) {
+            size++;
+        }
+
+        return size;
+    }
+
+    static @NonNull List<String> unpack(@Nullable String packed) {
+        if (packed == null) return Collections.emptyList();
+        if (packed.indexOf(SEPARATOR) < 0) return Collections.singletonList(packed);
+
+        List<String> strings = new ArrayList<>();
+        int start = 0;
+
+        for (int end = packed.indexOf(SEPARATOR); end >= 0; end = packed.indexOf(SEPARATOR, start)) {
+            strings.add(packed.substring(start, end));
+            start = end + 1;
+        }
+
+        strings.add(packed.substring(start));
+        return Collections.unmodifiableList(strings);
+    }
+}
@@ -0,0 +1,175 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Table-driven playback state machine. It maps every player state and idle reason to a
+ * {@link State} and reports only real transitions. The last transitions are kept in a preallocated
+ * ring buffer, so updates never allocate.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class PlaybackStateMachine {
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({STATE_UNKNOWN, STATE_IDLE, STATE_BUFFERING, STATE_PLAYING, STATE_PAUSED, STATE_FINISHED,
+            STATE_CANCELLED, STATE_INTERRUPTED, STATE_ERROR})
+    public @interface State {}
+    public static final int STATE_UNKNOWN = 0;
+    public static final int STATE_IDLE = 1;
+    public static final int STATE_BUFFERING = 2;
+    public static final int STATE_PLAYING = 3;
+    public static final int STATE_PAUSED = 4;
+    public static final int STATE_FINISHED = 5;
+    public static final int STATE_CANCELLED = 6;
+    public static final int STATE_INTERRUPTED = 7;
+    public static final int STATE_ERROR = 8;
+    public static final int STATE_COUNT = 9;
+
+    public static final int TRANSITION_LOG_SIZE = 64;
+
+    private static final int PLAYER_STATE_COUNT = 5;
+    private static final int IDLE_REASON_COUNT = 5;
+
+    /** Indexed by [playerState * IDLE_REASON_COUNT + idleReason] */
+    private static final int[] TABLE = new int[PLAYER_STATE_COUNT * IDLE_REASON_COUNT];
+
+    static {
+        for (int idleReason = 0; idleReason < IDLE_REASON_COUNT; idleReason++) {
+            TABLE[index(MediaClient.PLAYER_STATE_UNKNOWN, idleReason)] = STATE_UNKNOWN;
+            TABLE[index(MediaClient.PLAYER_STATE_PLAYING, idleReason)] = STATE_PLAYING;
+            TABLE[index(MediaClient.PLAYER_STATE_PAUSED, idleReason)] = STATE_PAUSED;
+            TABLE[index(MediaClient.PLAYER_STATE_BUFFERING, idleReason)] = STATE_BUFFERING;
+        }
+
+        TABLE[index(MediaClient.PLAYER_STATE_IDLE, MediaClient.IDLE_REASON_NONE)] = STATE_IDLE;
+        TABLE[index(MediaClient.PLAYER_STATE_IDLE, MediaClient.IDLE_REASON_FINISHED)] = STATE_FINISHED;
+        TABLE[index(MediaClient.PLAYER_STATE_IDLE, MediaClient.IDLE_REASON_CANCELED)] = STATE_CANCELLED;
+        TABLE[index(MediaClient.PLAYER_STATE_IDLE, MediaClient.IDLE_REASON_INTERRUPTED)] = STATE_INTERRUPTED;
+        TABLE[index(MediaClient.PLAYER_STATE_IDLE, MediaClient.IDLE_REASON_ERROR)] = STATE_ERROR;
+    }
+
+    private volatile int state = STATE_UNKNOWN;
+    private volatile long stateEnteredAt = 0;
+    private int settledState = STATE_UNKNOWN;
+    private int previousSettledState = STATE_UNKNOWN;
+
+    private final long[] logTimestamps = new long[TRANSITION_LOG_SIZE];
+    private final int[] logFromStates = new int[TRANSITION_LOG_SIZE];
+    private final int[] logToStates = new int[TRANSITION_LOG_SIZE];
+    private long transitionCount = 0;
+
+    private static int index(int playerState, int idleReason) {
+        return playerState * IDLE_REASON_COUNT + idleReason;
+    }
+
+    /**
+     * Maps a player state and idle reason to a {@link State}.
+     */
+    public static @State int map(int playerState, int idleReason) {
+        if (playerState < 0 || playerState >= PLAYER_STATE_COUNT) return STATE_UNKNOWN;
+        if (idleReason < 0 || idleReason >= IDLE_REASON_COUNT) idleReason = MediaClient.IDLE_REASON_NONE;
+
+        return TABLE[index(playerState, idleReason)];
+    }
+
+    /**
+     * Feeds a status update to the state machine.
+     *
+     * @param playerState One of the MediaClient.PLAYER_STATE_* constants
+     * @param idleReason One of the MediaClient.IDLE_REASON_* constants
+     * @param timestamp Time of the update, in milliseconds
+     * @return true if the update caused a transition, false otherwise
+     */
+    synchronized boolean update(int playerState, int idleReason, long timestamp) {
+        int newState = map(playerState, idleReason);
+        int oldState = state;
+
+        if (newState == oldState) return false;
+
+        int slot = (int) (transitionCount % TRANSITION_LOG_SIZE);
+        logTimestamps[slot] = timestamp;
+        logFromStates[slot] = oldState;
+        logToStates[slot] = newState;
+        transitionCount++;
+
+        if (newState != STATE_BUFFERING) {
+            previousSettledState = settledState;
+            settledState = newState;
+        }
+
+        stateEnteredAt = timestamp;
+        state = newState;
+
+        return true;
+    }
+
+    /**
+     * @return the current {@link State}
+     */
+    public @State int getState() {
+        return state;
+    }
+
+    /**
+     * @return the time at which the current state was entered
+     */
+    public long getStateEnteredAt() {
+        return stateEnteredAt;
+    }
+
+    /**
+     * The state the machine was in before the current one, not counting buffering. Useful to tell
+     * apart real state changes from a playback which was interrupted by buffering and resumed.
+     */
+    synchronized @State int getPreviousSettledState() {
+        return previousSettledState;
+    }
+
+    /**
+     * @return the total number of transitions since this machine was created
+     */
+    public synchronized long getTransitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * Copies the latest transitions, oldest first, into the given arrays. At most
+     * {@link #TRANSITION_LOG_SIZE} transitions are kept.
+     *
+     * @return the number of transitions copied
+     */
+    public synchronized int copyTransitions(long[] timestamps, int[] fromStates, int[] toStates) {
+        int available = (int) Math.min(transitionCount, TRANSITION_LOG_SIZE);
+        int count = Math.min(available, Math.min(timestamps.length, Math.min(fromStates.length, toStates.length)));
+        long first = transitionCount - count;
+
+        for (int i = 0; i < count; i++) {
+            int slot = (int) ((first + i) % TRANSITION_LOG_SIZE);
+            timestamps[i] = logTimestamps[slot];
+            fromStates[i] = logFromStates[slot];
+            toStates[i] = logToStates[slot];
+        }
+
+        return count;
+    }
+
+    public static String stateToString(@State int state) {
+        switch (state) {
+            case STATE_IDLE: return "IDLE";
+            case STATE_BUFFERING: return "BUFFERING";
+            case STATE_PLAYING: return "PLAYING";
+            case STATE_PAUSED: return "PAUSED";
+            case STATE_FINISHED: return "FINISHED";
+            case STATE_CANCELLED: return "CANCELLED";
+            case STATE_INTERRUPTED: return "INTERRUPTED";
+            case STATE_ERROR: return "ERROR";
+            default: return "UNKNOWN";
+        }
+    }
+
+    public interface Listener {
+        void onPlaybackStateChanged(@State int previousState, @State int newState, long timestamp);
+    }
+}
@@ -0,0 +1,56 @@
+package com.mradzinski.caster;
+
+/**
+ * Extrapolates the stream position between the receiver's updates from the last known position,
+ * the playback rate and the {@link Clock} time the position was known at, so a seekbar can move on
+ * every frame without asking the receiver.
+ */
+final class ProgressInterpolator {
+    private long position;
+    private long duration = CasterStatus.UNKNOWN_DURATION;
+    private double playbackRate = 1.0;
+    private long anchoredAt;
+    private boolean playing;
+
+    /**
+     * Anchors the extrapolation to a status snapshot, which also tells whether the position moves.
+     */
+    void update(CasterStatus status) {
+        position = status.getPosition();
+        duration = status.getDuration();
+        playbackRate = status.getPlaybackRate();
+        anchoredAt = status.getUpdatedAt();
+        playing = status.isPlaying();
+    }
+
+    /**
+     * Anchors the extrapolation to a progress update, received at the given {@link Clock} time.
+     */
+    void update(long position, long duration, long timestamp) {
+        this.position = position;
+        if (duration > 0) this.duration = duration;
+        anchoredAt = timestamp;
+    }
+
+    /**
+     * @param now the current {@link Clock} time
+     * @return the extrapolated position in milliseconds, between 0 and the duration if it's known
+     */
+    long getPosition(long now) {
+        if (!playing) return position;
+
+        long elapsed = Math.max(0, now - anchoredAt);
+        long extrapolated = position + (long) (elapsed * playbackRate);
+
+        if (duration > 0 && extrapolated > duration) return duration;
+        return Math.max(0, extrapolated);
+    }
+
+    long getDuration() {
+        return duration;
+    }
+
+    boolean isPlaying() {
+        return playing;
+    }
+}
@@ -0,0 +1,36 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Decides how often the receiver's progress is needed. The progress only moves while the media
+ * plays and only matters while someone can see it, so the updates are suspended otherwise. For long
+ * content the interval is stretched, since a seekbar moves by less than a pixel per second.
+ */
+final class ProgressSchedule {
+    static final long SUSPENDED = -1L;
+
+    // One update per thousandth of the stream, about one pixel of a large seekbar
+    private static final long STEPS_PER_STREAM = 1000L;
+    private static final long MAX_STRETCHED_INTERVAL_MS = 10000L;
+
+    private ProgressSchedule() { /* no-op */ }
+
+    /**
+     * @param requestedInterval the interval asked for by the listeners, in milliseconds
+     * @param status the latest status of the receiver
+     * @param visible true if the app is visible to the user
+     * @return the interval to use in milliseconds or {@link #SUSPENDED}
+     */
+    static long getInterval(long requestedInterval, @NonNull CasterStatus status, boolean visible) {
+        if (!visible || !status.isPlaying()) return SUSPENDED;
+
+        long duration = status.getDuration();
+        if (duration <= 0) return requestedInterval;
+
+        double rate = Math.max(status.getPlaybackRate(), 1.0);
+        long stretched = Math.min((long) (duration / STEPS_PER_STREAM / rate), MAX_STRETCHED_INTERVAL_MS);
+
+        return Math.max(requestedInterval, stretched);
+    }
+}
@@ -0,0 +1,192 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Smallest set of operations turning a queue into another one, given the keys (e.g. the content ids)
+ * of their items. Repeated keys are matched in order. The items kept in place are the longest
+ * subsequence of the current queue already in the wanted order, every other item is removed, or
+ * inserted or moved in blocks before the next item kept in place.
+ *
+ * <p>It runs in O(n log n) and allocates a few arrays of the queues' size.</p>
+ */
+final class QueueDiff {
+    static final int NO_MATCH = -1;
+    static final int END = -1;
+
+    private final int[] removed;
+    private final int[] matches;
+    private final List<Block> blocks;
+
+    private QueueDiff(int[] removed, int[] matches, List<Block> blocks) {
+        this.removed = removed;
+        this.matches = matches;
+        this.blocks = blocks;
+    }
+
+    static QueueDiff compute(@NonNull List<String> currentKeys, @NonNull List<String> wantedKeys) {
+        int currentSize = currentKeys.size();
+        int wantedSize = wantedKeys.size();
+
+        // First current index of every key, and the next one with the same key
+        Map<String, Integer> firstIndex = new HashMap<>(currentSize * 2);
+        int[] nextSameKey = new int[currentSize];
+
+        for (int i = currentSize - 1; i >= 0; i--) {
+            Integer next = firstIndex.put(currentKeys.get(i), i);
+            nextSameKey[i] = next != null ? next : NO_MATCH;
+        }
+
+        int[] matches = new int[wantedSize];
+        boolean[] currentMatched = new boolean[currentSize];
+
+        for (int i = 0; i < wantedSize; i++) {
+            String key = wantedKeys.get(i);
+            Integer match = firstIndex.get(key);
+
+            if (match == null || match == NO_MATCH) {
+                matches[i] = NO_MATCH;
+            } else {
+                matches[i] = match;
+                currentMatched[match] = true;
+                firstIndex.put(key, nextSameKey[match]);
+            }
+        }
+
+        int removedCount = 0;
+        for (boolean matched : currentMatched) {
+            if (!matched) removedCount++;
+        }
+
+        int[] removed = new int[removedCount];
+        for (int i = 0, r = 0; i < currentSize; i++) {
+            if (!currentMatched[i]) removed[r++] = i;
+        }
+
+        boolean[] stable = longestIncreasingMatches(matches);
+
+        List<Block> blocks = new ArrayList<>();
+        int runStart = 0;
+
+        for (int i = 0; i <= wantedSize; i++) {
+            if (i < wantedSize && !stable[i]) continue;
+
+            addBlocks(blocks, matches, runStart, i, i < wantedSize ? i : END);
+            runStart = i + 1;
+        }
+
+        return new QueueDiff(removed, matches, blocks);
+    }
+
+    /**
+     * Marks the wanted items whose matches form the longest increasing subsequence, those don't
+     * need to move.
+     */
+    private static boolean[] longestIncreasingMatches(int[] matches) {
+        int size = matches.length;
+        int[] tails = new int[size];
+        int[] previous = new int[size];
+        int length = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (matches[i] == NO_MATCH) continue;
+
+            int low = 0;
+            int high = length;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (matches[tails[middle]] < matches[i]) low = middle + 1; else high = middle;
+            }
+
+            previous[i] = low > 0 ? tails[low - 1] : NO_MATCH;
+            tails[low] = i;
+            if (low == length) length++;
+        }
+
+        boolean[] stable = new boolean[size];
+
+        for (int i = length > 0 ? tails[length - 1] : NO_MATCH; i != NO_MATCH; i = previous[i]) {
+            stable[i] = true;
+        }
+
+        return stable;
+    }
+
+    private static void addBlocks(List<Block> blocks, int[] matches, int start, int end, int anchor) {
+        int blockStart = start;
+
+        for (int i = start + 1; i <= end; i++) {
+            if (i < end && (matches[i] == NO_MATCH) == (matches[blockStart] == NO_MATCH)) continue;
+
+            blocks.add(new Block(matches[blockStart] == NO_MATCH, blockStart, i, anchor));
+            blockStart = i;
+        }
+    }
+
+    /**
+     * @return the indices in the current queue of the items to remove, in ascending order
+     */
+    int[] getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return the index in the current queue of the item matching the wanted one or {@link #NO_MATCH}
+     */
+    int getMatch(int wantedIndex) {
+        return matches[wantedIndex];
+    }
+
+    /**
+     * @return the blocks to insert or move, to be applied in order after the removals
+     */
+    List<Block> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * @return the number of requests needed, the removals being a single one
+     */
+    int getOperationCount() {
+        return (removed.length > 0 ? 1 : 0) + blocks.size();
+    }
+
+    boolean isEmpty() {
+        return removed.length == 0 && blocks.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "QueueDiff{removed=" + Arrays.toString(removed) + ", blocks=" + blocks + "}";
+    }
+
+    /**
+     * Consecutive wanted items which are all inserted or all moved before the same anchor.
+     */
+    static final class Block {
+        final boolean insert;
+        final int start;
+        final int end;
+        final int anchor;
+
+        Block(boolean insert, int start, int end, int anchor) {
+            this.insert = insert;
+            this.start = start;
+            this.end = end;
+            this.anchor = anchor;
+        }
+
+        @Override
+        public String toString() {
+            return (insert ? "insert" : "move") + "[" + start + ", " + end + ") before " + anchor;
+        }
+    }
+}
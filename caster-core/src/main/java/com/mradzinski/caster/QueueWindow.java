@@ -0,0 +1,123 @@
+package com.mradzinski.caster;
+
+/**
+ * Sliding window over a playlist too long to be queued on the receiver at once. Only the items
+ * around the current one are queued: the last played ones, for skipping back, and the following ones.
+ * Once half of the following ones are played, a page of items is pulled to fill the window again,
+ * and the played items beyond the kept ones are trimmed. So the queue never holds more than the
+ * window, whatever the length of the playlist.
+ *
+ * <p>Indices are the positions in the whole playlist.</p>
+ */
+final class QueueWindow {
+    static final int UNKNOWN = -1;
+
+    private final int size;
+    private final int keptPlayed;
+
+    private int end = UNKNOWN;
+    private int requestedEnd = 0;
+    private int trimmedBefore = 0;
+    private boolean fetching = false;
+
+    /**
+     * @param size the maximum number of items queued on the receiver
+     * @param keptPlayed the number of played items kept before the current one
+     */
+    QueueWindow(int size, int keptPlayed) {
+        if (size <= keptPlayed) throw new IllegalArgumentException("The window must be larger than the kept items");
+
+        this.size = size;
+        this.keptPlayed = keptPlayed;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Starts over from the given index, e.g. when a new playlist is loaded.
+     */
+    void reset(int startIndex) {
+        end = UNKNOWN;
+        requestedEnd = startIndex;
+        trimmedBefore = getFirstKept(startIndex);
+        fetching = false;
+    }
+
+    /**
+     * @return the index of the first item which should stay queued
+     */
+    int getFirstKept(int currentIndex) {
+        return Math.max(0, currentIndex - keptPlayed);
+    }
+
+    /**
+     * @return the index before which queued items should be removed, or {@link #UNKNOWN} if the
+     * removal of all of them was already requested
+     */
+    int getTrimIndex(int currentIndex, int firstQueued) {
+        int firstKept = getFirstKept(currentIndex);
+        if (firstQueued >= firstKept || trimmedBefore >= firstKept) return UNKNOWN;
+
+        return firstKept;
+    }
+
+    void onTrimRequested(int trimIndex) {
+        trimmedBefore = trimIndex;
+    }
+
+    /**
+     * @param currentIndex the index of the item playing
+     * @param queuedEnd the index after the last item queued on the receiver
+     * @return the number of items to fetch from {@link #getFetchIndex(int)}, 0 if none is needed yet
+     */
+    int getFetchCount(int currentIndex, int queuedEnd) {
+        int fetchIndex = getFetchIndex(queuedEnd);
+        if (fetching || isEndReached(fetchIndex)) return 0;
+
+        // Refilled by pages rather than item by item
+        int following = fetchIndex - currentIndex - 1;
+        if (following > (size - keptPlayed) / 2) return 0;
+
+        int windowEnd = getFirstKept(currentIndex) + size;
+        if (end != UNKNOWN) windowEnd = Math.min(windowEnd, end);
+
+        return Math.max(0, windowEnd - fetchIndex);
+    }
+
+    /**
+     * @return the index of the first item to fetch, after the queued items and those being queued
+     */
+    int getFetchIndex(int queuedEnd) {
+        return Math.max(queuedEnd, requestedEnd);
+    }
+
+    void onFetchStarted() {
+        fetching = true;
+    }
+
+    /**
+     * A page shorter than requested ends the playlist.
+     */
+    void onPageLoaded(int fetchIndex, int requested, int received) {
+        fetching = false;
+        requestedEnd = fetchIndex + received;
+
+        if (received < requested) end = requestedEnd;
+    }
+
+    /**
+     * The items of a page couldn't be queued, they're fetched again later.
+     */
+    void onQueueingFailed(int fetchIndex) {
+        requestedEnd = Math.min(requestedEnd, fetchIndex);
+    }
+
+    /**
+     * @return true if the playlist is known to end at or before the given index
+     */
+    boolean isEndReached(int index) {
+        return end != UNKNOWN && index >= end;
+    }
+}
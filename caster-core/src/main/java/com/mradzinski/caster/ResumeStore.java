@@ -0,0 +1,371 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * Remembers where the playback of every media stopped, by content URL, so it can be resumed there.
+ * The positions are kept in memory, so looking one up costs nothing. They're persisted to an
+ * append-only log on a background thread: the positions recorded meanwhile are collapsed to the
+ * latest one per media and appended in a batch every {@link #FLUSH_DELAY_MS}. Once the log has grown
+ * much larger than the positions it holds, it's rewritten with only those.
+ *
+ * <p>Positions too close to the start aren't worth resuming and those close to the end mean the
+ * media was finished, both forget the media. The {@link #MAX_ENTRIES} most recently played media
+ * are remembered.</p>
+ *
+ * <p>Recording and flushing must happen on the thread which runs the {@link Scheduler}, lookups
+ * can be made from any thread.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ResumeStore {
+    public static final long NO_POSITION = -1L;
+
+    public static final long MIN_RESUME_POSITION_MS = 10000L;
+    public static final long FINISHED_MARGIN_MS = 30000L;
+    public static final int MAX_ENTRIES = 1000;
+
+    static final long FLUSH_DELAY_MS = 30000L;
+
+    private static final int MAGIC = 0x43525331;
+    // writeUTF can't write more than 64 KiB, a character takes at most 3 bytes
+    private static final int MAX_URL_LENGTH = 8192;
+    private static final int MIN_COMPACTION_RECORDS = 256;
+    private static final long FORGOTTEN = NO_POSITION;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final Scheduler scheduler;
+    private final Executor executor;
+
+    private final Object lock = new Object();
+    // Most recently recorded last, FORGOTTEN for the media to forget until the log is read
+    private final LinkedHashMap<String, Long> positions = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private LinkedHashMap<String, Long> pending = new LinkedHashMap<>();
+    private boolean loaded = false;
+    private int clearCount = 0;
+
+    // Only touched on the executor
+    private int logRecords = 0;
+    private boolean compactionNeeded = false;
+
+    private boolean flushScheduled = false;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Starts reading the log right away on the executor.
+     *
+     * @param file the log, or null to only keep the positions in memory
+     * @param executor runs the disk accesses, one at a time and in order
+     */
+    ResumeStore(@Nullable File file, @NonNull Scheduler scheduler, @NonNull Executor executor) {
+        this.file = file;
+        this.scheduler = scheduler;
+        this.executor = executor;
+
+        if (file == null) {
+            loaded = true;
+            return;
+        }
+
+        final int loadClearCount = clearCount;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load(loadClearCount);
+            }
+        });
+    }
+
+    /**
+     * @return the position where the media stopped in milliseconds, or {@link #NO_POSITION}
+     */
+    public long getPosition(@NonNull String url) {
+        synchronized (lock) {
+            Long position = positions.get(url);
+            return position != null ? position : NO_POSITION;
+        }
+    }
+
+    /**
+     * @return true once the positions saved by the previous runs are known
+     */
+    public boolean isLoaded() {
+        synchronized (lock) {
+            return loaded;
+        }
+    }
+
+    /**
+     * Records where the playback of a media is.
+     *
+     * @param duration the duration of the media in milliseconds, or a negative value if unknown
+     */
+    void record(@NonNull String url, long position, long duration) {
+        boolean finished = duration > 0 && position >= duration - FINISHED_MARGIN_MS;
+        put(url, position < MIN_RESUME_POSITION_MS || finished ? FORGOTTEN : position);
+    }
+
+    /**
+     * Forgets where the media stopped, e.g. to play it again from the start.
+     */
+    public void remove(@NonNull String url) {
+        put(url, FORGOTTEN);
+    }
+
+    private void put(String url, long position) {
+        if (url.length() > MAX_URL_LENGTH) return;
+
+        synchronized (lock) {
+            Long previous = positions.remove(url);
+
+            // Until the log is read, it keeps the saved position from coming back
+            if (position != FORGOTTEN || !loaded) positions.put(url, position);
+
+            boolean unchanged = previous != null ? previous == position : position == FORGOTTEN && loaded;
+            if (file == null || unchanged) return;
+
+            pending.put(url, position);
+        }
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.postDelayed(flush, FLUSH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Forgets every position, in memory and on disk.
+     */
+    public void clear() {
+        synchronized (lock) {
+            positions.clear();
+            pending.clear();
+            clearCount++;
+        }
+
+        if (file == null) return;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Rewritten from scratch by the next batch
+                if (!file.delete() && file.exists()) compactionNeeded = true;
+                logRecords = 0;
+            }
+        });
+    }
+
+    /**
+     * Writes the positions recorded since the last flush now rather than after the batching delay,
+     * e.g. when the app goes to the background.
+     */
+    public void flush() {
+        scheduler.cancel(flush);
+        flushScheduled = false;
+
+        final LinkedHashMap<String, Long> batch;
+
+        synchronized (lock) {
+            if (pending.isEmpty()) return;
+
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(batch);
+            }
+        });
+    }
+
+    private void load(int loadClearCount) {
+        LinkedHashMap<String, Long> saved = new LinkedHashMap<>();
+        int records = 0;
+        boolean damaged = false;
+
+        if (file.exists()) {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(readFully(file)));
+
+                if (in.readInt() != MAGIC) throw new IOException("Unknown resume positions format");
+
+                while (in.available() > 0) {
+                    String url = in.readUTF();
+                    long position = in.readLong();
+                    if (in.readInt() != checksum(url, position)) throw new IOException("Damaged resume position");
+
+                    saved.remove(url);
+                    saved.put(url, position);
+                    records++;
+                }
+            } catch (IOException e) {
+                // A write interrupted by the process' death, what was read before is still valid
+                damaged = true;
+            }
+        }
+
+        synchronized (lock) {
+            if (loadClearCount == clearCount) {
+                // Positions recorded while loading are more recent than the saved ones
+                LinkedHashMap<String, Long> merged = new LinkedHashMap<>();
+
+                for (Map.Entry<String, Long> entry : saved.entrySet()) {
+                    if (entry.getValue() != FORGOTTEN && !positions.containsKey(entry.getKey())) {
+                        merged.put(entry.getKey(), entry.getValue());
+                    }
+                }
+
+                for (Map.Entry<String, Long> entry : positions.entrySet()) {
+                    if (entry.getValue() != FORGOTTEN) merged.put(entry.getKey(), entry.getValue());
+                }
+
+                // Past the limit, the least recently played are evicted
+                positions.clear();
+                positions.putAll(merged);
+            }
+
+            loaded = true;
+        }
+
+        logRecords = records;
+        compactionNeeded = damaged;
+    }
+
+    private void write(Map<String, Long> batch) {
+        try {
+            if (compactionNeeded || logRecords + batch.size() > getCompactionThreshold()) {
+                // The positions in memory include the batch
+                compact();
+                return;
+            }
+
+            boolean empty = !file.exists() || file.length() == 0;
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+
+            try {
+                if (empty) out.writeInt(MAGIC);
+
+                for (Map.Entry<String, Long> entry : batch.entrySet()) {
+                    writeRecord(out, entry.getKey(), entry.getValue());
+                }
+            } finally {
+                out.close();
+            }
+
+            logRecords += batch.size();
+        } catch (IOException e) {
+            // The log may hold a partial batch, it's rewritten from memory next time
+            compactionNeeded = true;
+        }
+    }
+
+    private int getCompactionThreshold() {
+        synchronized (lock) {
+            return 2 * positions.size() + MIN_COMPACTION_RECORDS;
+        }
+    }
+
+    /**
+     * Rewrites the log with only the positions currently known, replacing it atomically.
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<String, Long>> snapshot = new ArrayList<>();
+
+        synchronized (lock) {
+            for (Map.Entry<String, Long> entry : positions.entrySet()) {
+                if (entry.getValue() != FORGOTTEN) snapshot.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+            }
+        }
+
+        File compacted = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(compacted);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+
+        try {
+            out.writeInt(MAGIC);
+
+            for (Map.Entry<String, Long> entry : snapshot) {
+                writeRecord(out, entry.getKey(), entry.getValue());
+            }
+
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!compacted.renameTo(file)) throw new IOException("Unable to replace " + file);
+
+        logRecords = snapshot.size();
+        compactionNeeded = false;
+    }
+
+    private static void writeRecord(DataOutputStream out, String url, long position) throws IOException {
+        out.writeUTF(url);
+        out.writeLong(position);
+        out.writeInt(checksum(url, position));
+    }
+
+    private static int checksum(String url, long position) {
+        CRC32 crc = new CRC32();
+        crc.update(url.getBytes(UTF_8));
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (position >>> shift));
+        }
+
+        return (int) crc.getValue();
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+
+        try {
+            int read = 0;
+
+            while (read < bytes.length) {
+                int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) throw new EOFException();
+                read += count;
+            }
+        } finally {
+            in.close();
+        }
+
+        return bytes;
+    }
+}
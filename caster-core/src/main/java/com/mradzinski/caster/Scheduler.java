@@ -0,0 +1,10 @@
+package com.mradzinski.caster;
+
+/**
+ * Runs delayed tasks on the thread which drives the core classes, e.g. the main thread on Android.
+ */
+public interface Scheduler {
+    void postDelayed(Runnable task, long delayMs);
+
+    void cancel(Runnable task);
+}
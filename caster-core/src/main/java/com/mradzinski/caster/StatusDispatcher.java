@@ -0,0 +1,121 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.AnyThread;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Status and progress path of Caster. Every status update of the {@link MediaClient} is turned into
+ * one {@link CasterStatus} snapshot, fed to the {@link PlaybackStateMachine} and {@link CasterMetrics},
+ * and every real transition is fanned out to the {@link PlaybackStateMachine.Listener}s. Progress
+ * updates are fanned out as they come.
+ *
+ * <p>It's driven by Caster's media listener on a device, and by the SimulatedMediaClient of the
+ * caster-testing module in the tests and benchmarks.</p>
+ */
+final class StatusDispatcher implements MediaClient.Listener, MediaClient.ProgressListener {
+    private final Clock clock;
+    private final CasterMetrics metrics;
+    private final PlaybackStateMachine stateMachine = new PlaybackStateMachine();
+    private final ListenerSet<PlaybackStateMachine.Listener> playbackStateListeners = new ListenerSet<>();
+    private final ListenerSet<MediaClient.ProgressListener> progressListeners = new ListenerSet<>();
+
+    private MediaClient mediaClient;
+    private volatile CasterStatus status = CasterStatus.EMPTY;
+
+    StatusDispatcher(Clock clock, CasterMetrics metrics) {
+        this.clock = clock;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the client the snapshots are read from. Listeners aren't registered on it, that's up to
+     * the caller.
+     */
+    @MainThread
+    void setMediaClient(@Nullable MediaClient mediaClient) {
+        this.mediaClient = mediaClient;
+    }
+
+    @AnyThread
+    @NonNull CasterStatus getStatus() {
+        return status;
+    }
+
+    PlaybackStateMachine getStateMachine() {
+        return stateMachine;
+    }
+
+    ListenerSet<PlaybackStateMachine.Listener> getPlaybackStateListeners() {
+        return playbackStateListeners;
+    }
+
+    ListenerSet<MediaClient.ProgressListener> getProgressListeners() {
+        return progressListeners;
+    }
+
+    /**
+     * Rebuilds the status snapshot from the {@link MediaClient}. Must be called once per status
+     * update, before any other listener reads it.
+     */
+    @MainThread
+    CasterStatus updateStatus() {
+        CasterStatus newStatus = null;
+
+        try {
+            if (mediaClient != null) newStatus = mediaClient.getStatus(clock.now());
+        } catch (Exception ignored) {}
+
+        if (newStatus == null) newStatus = CasterStatus.EMPTY;
+
+        status = newStatus;
+        return newStatus;
+    }
+
+    /**
+     * Feeds a snapshot to the state machine and the metrics and notifies the listeners if it caused
+     * a transition.
+     *
+     * @return true if the snapshot caused a transition, false otherwise
+     */
+    @MainThread
+    boolean dispatch(CasterStatus status) {
+        long now = clock.now();
+        int previousState = stateMachine.getState();
+
+        if (!stateMachine.update(status.getPlayerState(), status.getIdleReason(), now)) return false;
+
+        int state = stateMachine.getState();
+
+        metrics.onPlaybackStateChanged(previousState, state, status.getIdleReason(), now);
+
+        for (Object listener : playbackStateListeners.getListeners()) {
+            ((PlaybackStateMachine.Listener) listener).onPlaybackStateChanged(previousState, state, now);
+        }
+
+        return true;
+    }
+
+    @Override
+    public void onStatusUpdated() {
+        dispatch(updateStatus());
+    }
+
+    @Override
+    public void onQueueStatusUpdated() {
+        //no-op
+    }
+
+    @Override
+    public void onPreloadStatusUpdated() {
+        //no-op
+    }
+
+    @Override
+    public void onProgressUpdated(long progressMs, long durationMs) {
+        for (Object listener : progressListeners.getListeners()) {
+            ((MediaClient.ProgressListener) listener).onProgressUpdated(progressMs, durationMs);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of strings repeated across many objects, e.g. content types, so a catalog of
+ * media holds a single copy of each. The pool is bounded, strings given once it's full are returned
+ * as they are. Safe to use from any thread.
+ */
+final class StringPool {
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    StringPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the pooled string equal to the given one, or the given one if there's none
+     */
+    @Nullable String get(@Nullable String string) {
+        if (string == null) return null;
+
+        String pooled = strings.get(string);
+        if (pooled != null) return pooled;
+
+        // Checked loosely, a few more strings under contention don't matter
+        if (strings.size() >= maxSize) return string;
+
+        pooled = strings.putIfAbsent(string, string);
+        return pooled != null ? pooled : string;
+    }
+
+    int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,158 @@
+package com.mradzinski.caster;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandBufferTest {
+    private SimulatedScheduler scheduler;
+    private RecordingMediaClient mediaClient;
+    private CommandBuffer buffer;
+
+    @Before
+    public void setUp() {
+        scheduler = new SimulatedScheduler();
+        mediaClient = new RecordingMediaClient();
+        buffer = new CommandBuffer(scheduler, new CasterMetricsNoOp());
+    }
+
+    @Test
+    public void commandsAreCollapsedToTheirFinalEffect() {
+        for (int i = 0; i < 100; i++) {
+            buffer.play();
+            buffer.pause();
+            buffer.seek(i * 1000L);
+            buffer.setVolume(i / 100.0);
+        }
+
+        assertEquals(CommandBuffer.INTENT_PAUSE, buffer.getPlayIntent());
+        assertEquals(4 * 100 - 3, buffer.getCollapsedCount());
+
+        assertEquals(3, buffer.replay(mediaClient));
+        assertEquals("seek 99000, volume 0.99, pause", mediaClient.getCommands());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void seekIsReplayedBeforePlaying() {
+        buffer.play();
+        buffer.seek(42000L);
+
+        assertEquals(2, buffer.replay(mediaClient));
+        assertEquals("seek 42000, play", mediaClient.getCommands());
+    }
+
+    @Test
+    public void oldCommandsExpire() {
+        buffer.setMaxAge(1000L);
+        buffer.seek(42000L);
+        scheduler.advanceBy(500L);
+        buffer.play();
+        scheduler.advanceBy(501L);
+
+        assertEquals(1, buffer.replay(mediaClient));
+        assertEquals("play", mediaClient.getCommands());
+        assertEquals(1, buffer.getExpiredCount());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void clearDropsEverything() {
+        buffer.play();
+        buffer.seek(42000L);
+        buffer.setVolume(0.5);
+        assertFalse(buffer.isEmpty());
+
+        buffer.clear();
+
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.replay(mediaClient));
+        assertEquals("", mediaClient.getCommands());
+    }
+
+    /**
+     * Writes down the commands sent, which never complete.
+     */
+    private static final class RecordingMediaClient implements MediaClient {
+        private final StringBuilder commands = new StringBuilder();
+
+        String getCommands() {
+            return commands.toString();
+        }
+
+        private PendingCommand add(String command) {
+            if (commands.length() > 0) commands.append(", ");
+            commands.append(command);
+
+            return new PendingCommand() {
+                @Override
+                public void setResultListener(ResultListener resultListener) {
+                    //no-op
+                }
+            };
+        }
+
+        @Override
+        public CasterStatus getStatus(long timestamp) {
+            return null;
+        }
+
+        @Override
+        public long getApproximateStreamPosition() {
+            return 0;
+        }
+
+        @Override
+        public PendingCommand play() {
+            return add("play");
+        }
+
+        @Override
+        public PendingCommand pause() {
+            return add("pause");
+        }
+
+        @Override
+        public PendingCommand seek(long position) {
+            return add("seek " + position);
+        }
+
+        @Override
+        public PendingCommand setStreamVolume(double volume) {
+            return add("volume " + volume);
+        }
+
+        @Override
+        public PendingCommand setPlaybackRate(double rate) {
+            return add("rate " + rate);
+        }
+
+        @Override
+        public PendingCommand requestStatus() {
+            return add("status");
+        }
+
+        @Override
+        public void addListener(Listener listener) {
+            //no-op
+        }
+
+        @Override
+        public void removeListener(Listener listener) {
+            //no-op
+        }
+
+        @Override
+        public void addProgressListener(ProgressListener progressListener, long intervalMs) {
+            //no-op
+        }
+
+        @Override
+        public void removeProgressListener(ProgressListener progressListener) {
+            //no-op
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.mradzinski.caster;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommandCoalescerTest {
+    // A command is answered after two network delays
+    private static final long NETWORK_DELAY_MS = 50L;
+    private static final long ROUND_TRIP_MS = 2 * NETWORK_DELAY_MS;
+
+    private SimulatedScheduler scheduler;
+    private SimulatedMediaClient mediaClient;
+    private final List<Double> sent = new ArrayList<>();
+    private CommandCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        scheduler = new SimulatedScheduler();
+        mediaClient = new SimulatedMediaClient.Builder(scheduler, scheduler)
+                .setNetworkDelay(NETWORK_DELAY_MS, 0)
+                .setStatusInterval(0)
+                .build();
+
+        coalescer = new CommandCoalescer(scheduler, scheduler, new CasterMetricsNoOp(),
+                CasterMetrics.COMMAND_SET_VOLUME, 0) {
+            @Override
+            MediaClient.PendingCommand send(double value) {
+                sent.add(value);
+                return mediaClient.setStreamVolume(value);
+            }
+        };
+    }
+
+    @Test
+    public void onlyOneCommandIsInFlight() {
+        for (int i = 1; i <= 100; i++) {
+            coalescer.submit(i / 100.0);
+        }
+
+        assertEquals(Arrays.asList(0.01), sent);
+        assertEquals(98, coalescer.getCollapsedCount());
+
+        scheduler.advanceBy(ROUND_TRIP_MS);
+        assertEquals(Arrays.asList(0.01, 1.0), sent);
+
+        scheduler.advanceBy(10 * ROUND_TRIP_MS);
+        assertEquals(2, mediaClient.getSentCommandCount());
+    }
+
+    @Test
+    public void commandsWaitForTheMinimumInterval() {
+        coalescer.setMinInterval(500L);
+        coalescer.submit(0.1);
+        scheduler.advanceBy(ROUND_TRIP_MS + 50L);
+        coalescer.submit(0.2);
+
+        assertEquals(Arrays.asList(0.1), sent);
+
+        scheduler.advanceBy(500L - ROUND_TRIP_MS - 50L - 1);
+        assertEquals(Arrays.asList(0.1), sent);
+
+        scheduler.advanceBy(1L);
+        assertEquals(Arrays.asList(0.1, 0.2), sent);
+    }
+
+    @Test
+    public void resultsFromBeforeAResetAreIgnored() {
+        coalescer.submit(0.1);
+        scheduler.advanceBy(NETWORK_DELAY_MS);
+
+        coalescer.reset();
+        coalescer.submit(0.2);
+        coalescer.submit(0.3);
+
+        // The answer to 0.1 doesn't free the slot taken by 0.2
+        scheduler.advanceBy(NETWORK_DELAY_MS);
+        assertEquals(Arrays.asList(0.1, 0.2), sent);
+
+        scheduler.advanceBy(NETWORK_DELAY_MS);
+        assertEquals(Arrays.asList(0.1, 0.2, 0.3), sent);
+    }
+
+    @Test
+    public void resetDropsThePendingValue() {
+        coalescer.submit(0.1);
+        coalescer.submit(0.2);
+        coalescer.reset();
+
+        scheduler.advanceBy(10 * ROUND_TRIP_MS);
+        assertEquals(Arrays.asList(0.1), sent);
+    }
+}
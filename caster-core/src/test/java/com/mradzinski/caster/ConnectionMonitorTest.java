@@ -0,0 +1,132 @@
+package com.mradzinski.caster;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionMonitorTest {
+    private static final long NETWORK_DELAY_MS = 50L;
+    private static final long TEN_MINUTES_MS = 600000L;
+
+    private SimulatedScheduler scheduler;
+    private final List<Long> reconnectAttempts = new ArrayList<>();
+    private final List<Integer> qualities = new ArrayList<>();
+    private ConnectionMonitor monitor;
+
+    @Before
+    public void setUp() {
+        scheduler = new SimulatedScheduler();
+
+        monitor = new ConnectionMonitor(scheduler, scheduler, new ConnectionMonitor.Reconnector() {
+            @Override
+            public boolean reconnect() {
+                reconnectAttempts.add(scheduler.now());
+                return true;
+            }
+        }, new Random(42));
+
+        monitor.addListener(new ConnectionMonitor.Listener() {
+            @Override
+            public void onConnectionQualityChanged(int quality, long roundTripTimeMs) {
+                qualities.add(quality);
+            }
+        });
+    }
+
+    @Test
+    public void reconnectGivesUpAfterTheMaximumAttempts() {
+        monitor.onConnected(createMediaClient(0));
+        monitor.onSuspended();
+
+        assertTrue(monitor.isReconnecting());
+        assertEquals(ConnectionMonitor.QUALITY_SUSPENDED, monitor.getQuality());
+
+        scheduler.advanceBy(TEN_MINUTES_MS);
+
+        assertEquals(ConnectionMonitor.MAX_RECONNECT_ATTEMPTS, reconnectAttempts.size());
+        assertFalse(monitor.isReconnecting());
+        assertEquals(ConnectionMonitor.QUALITY_DISCONNECTED, monitor.getQuality());
+        assertEquals(Arrays.asList(ConnectionMonitor.QUALITY_GOOD, ConnectionMonitor.QUALITY_SUSPENDED,
+                ConnectionMonitor.QUALITY_DISCONNECTED), qualities);
+        assertEquals(0, scheduler.getPendingTaskCount());
+    }
+
+    @Test
+    public void reconnectDelaysGrowExponentiallyWithJitter() {
+        monitor.onSuspended();
+        scheduler.advanceBy(TEN_MINUTES_MS);
+
+        long expected = 1000L;
+        long previous = 0;
+
+        for (long attemptAt : reconnectAttempts) {
+            long delay = attemptAt - previous;
+            assertTrue("Delay of " + delay + " ms instead of " + expected, delay >= expected * 0.8 - 1);
+            assertTrue("Delay of " + delay + " ms instead of " + expected, delay <= expected * 1.2 + 1);
+
+            previous = attemptAt;
+            expected = Math.min(2 * expected, 30000L);
+        }
+    }
+
+    @Test
+    public void reconnectStopsOnceTheSessionIsBack() {
+        monitor.onSuspended();
+        scheduler.advanceBy(5000L);
+
+        int attempts = reconnectAttempts.size();
+        assertTrue(attempts > 0);
+
+        monitor.onConnected(createMediaClient(0));
+        scheduler.advanceBy(TEN_MINUTES_MS);
+
+        assertEquals(attempts, reconnectAttempts.size());
+        assertFalse(monitor.isReconnecting());
+        assertEquals(ConnectionMonitor.QUALITY_GOOD, monitor.getQuality());
+    }
+
+    @Test
+    public void heartbeatMeasuresTheRoundTripTime() {
+        monitor.onConnected(createMediaClient(0));
+        scheduler.advanceBy(ConnectionMonitor.HEARTBEAT_INTERVAL_MS);
+
+        assertEquals(2 * NETWORK_DELAY_MS, monitor.getRoundTripTime());
+        assertEquals(ConnectionMonitor.QUALITY_GOOD, monitor.getQuality());
+    }
+
+    @Test
+    public void lostHeartbeatsMakeTheConnectionPoor() {
+        monitor.onConnected(createMediaClient(1.0));
+        scheduler.advanceBy(ConnectionMonitor.HEARTBEAT_TIMEOUT_MS);
+        assertEquals(ConnectionMonitor.QUALITY_GOOD, monitor.getQuality());
+
+        scheduler.advanceBy(ConnectionMonitor.HEARTBEAT_INTERVAL_MS + ConnectionMonitor.HEARTBEAT_TIMEOUT_MS);
+        assertEquals(ConnectionMonitor.QUALITY_POOR, monitor.getQuality());
+    }
+
+    @Test
+    public void disabledHeartbeatSendsNothing() {
+        SimulatedMediaClient mediaClient = createMediaClient(0);
+        monitor.setHeartbeatEnabled(false);
+        monitor.onConnected(mediaClient);
+        scheduler.advanceBy(TEN_MINUTES_MS);
+
+        assertEquals(0, mediaClient.getSentCommandCount());
+    }
+
+    private SimulatedMediaClient createMediaClient(double dropRate) {
+        return new SimulatedMediaClient.Builder(scheduler, scheduler)
+                .setNetworkDelay(NETWORK_DELAY_MS, 0)
+                .setDropRate(dropRate, ConnectionMonitor.HEARTBEAT_TIMEOUT_MS)
+                .setStatusInterval(0)
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.mradzinski.caster;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlaybackStateMachineTest {
+    private static final int[] IDLE_REASONS = {MediaClient.IDLE_REASON_NONE, MediaClient.IDLE_REASON_FINISHED,
+            MediaClient.IDLE_REASON_CANCELED, MediaClient.IDLE_REASON_INTERRUPTED, MediaClient.IDLE_REASON_ERROR};
+
+    @Test
+    public void idleReasonOnlyMattersWhenIdle() {
+        for (int idleReason : IDLE_REASONS) {
+            assertEquals(PlaybackStateMachine.STATE_UNKNOWN,
+                    PlaybackStateMachine.map(MediaClient.PLAYER_STATE_UNKNOWN, idleReason));
+            assertEquals(PlaybackStateMachine.STATE_PLAYING,
+                    PlaybackStateMachine.map(MediaClient.PLAYER_STATE_PLAYING, idleReason));
+            assertEquals(PlaybackStateMachine.STATE_PAUSED,
+                    PlaybackStateMachine.map(MediaClient.PLAYER_STATE_PAUSED, idleReason));
+            assertEquals(PlaybackStateMachine.STATE_BUFFERING,
+                    PlaybackStateMachine.map(MediaClient.PLAYER_STATE_BUFFERING, idleReason));
+        }
+    }
+
+    @Test
+    public void idleReasonsMapToTheirOwnStates() {
+        int idle = MediaClient.PLAYER_STATE_IDLE;
+
+        assertEquals(PlaybackStateMachine.STATE_IDLE, PlaybackStateMachine.map(idle, MediaClient.IDLE_REASON_NONE));
+        assertEquals(PlaybackStateMachine.STATE_FINISHED,
+                PlaybackStateMachine.map(idle, MediaClient.IDLE_REASON_FINISHED));
+        assertEquals(PlaybackStateMachine.STATE_CANCELLED,
+                PlaybackStateMachine.map(idle, MediaClient.IDLE_REASON_CANCELED));
+        assertEquals(PlaybackStateMachine.STATE_INTERRUPTED,
+                PlaybackStateMachine.map(idle, MediaClient.IDLE_REASON_INTERRUPTED));
+        assertEquals(PlaybackStateMachine.STATE_ERROR, PlaybackStateMachine.map(idle, MediaClient.IDLE_REASON_ERROR));
+    }
+
+    @Test
+    public void unknownValuesAreTolerated() {
+        assertEquals(PlaybackStateMachine.STATE_UNKNOWN, PlaybackStateMachine.map(-1, MediaClient.IDLE_REASON_NONE));
+        assertEquals(PlaybackStateMachine.STATE_UNKNOWN, PlaybackStateMachine.map(42, MediaClient.IDLE_REASON_NONE));
+        assertEquals(PlaybackStateMachine.STATE_IDLE, PlaybackStateMachine.map(MediaClient.PLAYER_STATE_IDLE, 42));
+    }
+
+    @Test
+    public void onlyRealTransitionsAreReported() {
+        PlaybackStateMachine machine = new PlaybackStateMachine();
+
+        assertTrue(machine.update(MediaClient.PLAYER_STATE_PLAYING, MediaClient.IDLE_REASON_NONE, 10L));
+        assertFalse(machine.update(MediaClient.PLAYER_STATE_PLAYING, MediaClient.IDLE_REASON_NONE, 20L));
+        assertFalse(machine.update(MediaClient.PLAYER_STATE_PLAYING, MediaClient.IDLE_REASON_FINISHED, 30L));
+
+        assertEquals(PlaybackStateMachine.STATE_PLAYING, machine.getState());
+        assertEquals(10L, machine.getStateEnteredAt());
+        assertEquals(1, machine.getTransitionCount());
+    }
+
+    @Test
+    public void bufferingIsNotASettledState() {
+        PlaybackStateMachine machine = new PlaybackStateMachine();
+        machine.update(MediaClient.PLAYER_STATE_PAUSED, MediaClient.IDLE_REASON_NONE, 10L);
+        machine.update(MediaClient.PLAYER_STATE_PLAYING, MediaClient.IDLE_REASON_NONE, 20L);
+        machine.update(MediaClient.PLAYER_STATE_BUFFERING, MediaClient.IDLE_REASON_NONE, 30L);
+
+        assertEquals(PlaybackStateMachine.STATE_BUFFERING, machine.getState());
+        assertEquals(PlaybackStateMachine.STATE_PAUSED, machine.getPreviousSettledState());
+
+        // Playing again after a stall, not a real state change
+        machine.update(MediaClient.PLAYER_STATE_PLAYING, MediaClient.IDLE_REASON_NONE, 40L);
+        assertEquals(PlaybackStateMachine.STATE_PLAYING, machine.getPreviousSettledState());
+    }
+
+    @Test
+    public void transitionLogKeepsTheLatestOnes() {
+        PlaybackStateMachine machine = new PlaybackStateMachine();
+        int updates = PlaybackStateMachine.TRANSITION_LOG_SIZE + 10;
+
+        for (int i = 0; i < updates; i++) {
+            int playerState = i % 2 == 0 ? MediaClient.PLAYER_STATE_PLAYING : MediaClient.PLAYER_STATE_PAUSED;
+            machine.update(playerState, MediaClient.IDLE_REASON_NONE, i);
+        }
+
+        long[] timestamps = new long[PlaybackStateMachine.TRANSITION_LOG_SIZE];
+        int[] fromStates = new int[PlaybackStateMachine.TRANSITION_LOG_SIZE];
+        int[] toStates = new int[PlaybackStateMachine.TRANSITION_LOG_SIZE];
+
+        assertEquals(updates, machine.getTransitionCount());
+        assertEquals(PlaybackStateMachine.TRANSITION_LOG_SIZE,
+                machine.copyTransitions(timestamps, fromStates, toStates));
+
+        assertEquals(10L, timestamps[0]);
+        assertEquals(PlaybackStateMachine.STATE_PAUSED, fromStates[0]);
+        assertEquals(PlaybackStateMachine.STATE_PLAYING, toStates[0]);
+        assertEquals(updates - 1, timestamps[PlaybackStateMachine.TRANSITION_LOG_SIZE - 1]);
+    }
+}
@@ -0,0 +1,182 @@
+package com.mradzinski.caster;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QueueDiffTest {
+    private static final int RANDOM_CASES = 20000;
+    private static final int LARGE_QUEUE_SIZE = 5000;
+    // About 1.4 ms on a desktop JVM, the margin keeps slow build machines from failing
+    private static final long LARGE_QUEUE_MAX_NANOS = 50000000L;
+
+    @Test
+    public void identicalQueuesNeedNothing() {
+        List<String> keys = Arrays.asList("a", "b", "c");
+        QueueDiff diff = QueueDiff.compute(keys, keys);
+
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.getOperationCount());
+    }
+
+    @Test
+    public void removalsAreASingleOperation() {
+        QueueDiff diff = QueueDiff.compute(Arrays.asList("a", "b", "c", "d", "e"), Arrays.asList("a", "c", "e"));
+
+        assertArrayEquals(new int[] {1, 3}, diff.getRemoved());
+        assertTrue(diff.getBlocks().isEmpty());
+        assertEquals(1, diff.getOperationCount());
+    }
+
+    @Test
+    public void longestOrderedRunStaysInPlace() {
+        // b, c, d are already in order, only a moves
+        QueueDiff diff = QueueDiff.compute(Arrays.asList("a", "b", "c", "d"), Arrays.asList("b", "c", "d", "a"));
+
+        assertEquals(0, diff.getRemoved().length);
+        assertEquals(1, diff.getBlocks().size());
+
+        QueueDiff.Block block = diff.getBlocks().get(0);
+        assertFalse(block.insert);
+        assertEquals(3, block.start);
+        assertEquals(4, block.end);
+        assertEquals(QueueDiff.END, block.anchor);
+    }
+
+    @Test
+    public void consecutiveItemsAreGroupedInBlocks() {
+        QueueDiff diff = QueueDiff.compute(Arrays.asList("a", "b", "c"), Arrays.asList("x", "y", "a", "c", "b", "z"));
+
+        // x and y are inserted before a, the first item kept in place
+        assertEquals(0, diff.getRemoved().length);
+        assertEquals(QueueDiff.NO_MATCH, diff.getMatch(0));
+        assertEquals(0, diff.getMatch(2));
+
+        QueueDiff.Block first = diff.getBlocks().get(0);
+        assertTrue(first.insert);
+        assertEquals(0, first.start);
+        assertEquals(2, first.end);
+        assertEquals(2, first.anchor);
+        assertEquals(3, diff.getOperationCount());
+        assertEquals(Arrays.asList("x", "y", "a", "c", "b", "z"),
+                apply(Arrays.asList("a", "b", "c"), Arrays.asList("x", "y", "a", "c", "b", "z"), diff));
+    }
+
+    @Test
+    public void repeatedKeysAreMatchedInOrder() {
+        QueueDiff diff = QueueDiff.compute(Arrays.asList("a", "a", "b"), Arrays.asList("a", "b", "a"));
+
+        assertEquals(0, diff.getMatch(0));
+        assertEquals(2, diff.getMatch(1));
+        assertEquals(1, diff.getMatch(2));
+    }
+
+    @Test
+    public void randomDiffsTurnTheCurrentQueueIntoTheWantedOne() {
+        Random random = new Random(7);
+
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            List<String> current = randomKeys(random);
+            List<String> wanted = randomKeys(random);
+
+            QueueDiff diff = QueueDiff.compute(current, wanted);
+            assertEquals(current + " -> " + wanted + " with " + diff, wanted, apply(current, wanted, diff));
+        }
+    }
+
+    @Test
+    public void largeQueueIsDiffedQuickly() {
+        List<String> current = new ArrayList<>();
+        for (int i = 0; i < LARGE_QUEUE_SIZE; i++) {
+            current.add("https://example.com/item/" + i);
+        }
+
+        List<String> wanted = new ArrayList<>(current);
+        Collections.swap(wanted, 10, 4000);
+        wanted.remove(2500);
+        wanted.add(100, "https://example.com/new");
+
+        QueueDiff diff = null;
+        for (int i = 0; i < 100; i++) {
+            diff = QueueDiff.compute(current, wanted);
+        }
+
+        int runs = 100;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < runs; i++) {
+            diff = QueueDiff.compute(current, wanted);
+        }
+
+        long nanosPerDiff = (System.nanoTime() - start) / runs;
+
+        assertEquals(wanted, apply(current, wanted, diff));
+        assertTrue("A diff took " + nanosPerDiff + " ns", nanosPerDiff < LARGE_QUEUE_MAX_NANOS);
+    }
+
+    private static List<String> randomKeys(Random random) {
+        int size = random.nextInt(12);
+        List<String> keys = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            keys.add("k" + random.nextInt(8));
+        }
+
+        return keys;
+    }
+
+    /**
+     * Applies the diff like a receiver would: the removals, then every block in order, a block of
+     * moved items being taken out of the queue before being put back before the anchor.
+     */
+    private static List<String> apply(List<String> current, List<String> wanted, QueueDiff diff) {
+        // Current items are identified by their index, inserted ones by their wanted index
+        List<Object> queue = new ArrayList<>();
+        for (int i = 0; i < current.size(); i++) {
+            queue.add(i);
+        }
+
+        for (int index : diff.getRemoved()) {
+            queue.remove((Object) index);
+        }
+
+        Map<Integer, Object> items = new HashMap<>();
+        for (int i = 0; i < wanted.size(); i++) {
+            int match = diff.getMatch(i);
+            items.put(i, match != QueueDiff.NO_MATCH ? (Object) match : (Object) ("new" + i));
+        }
+
+        for (QueueDiff.Block block : diff.getBlocks()) {
+            List<Object> blockItems = new ArrayList<>();
+            for (int i = block.start; i < block.end; i++) {
+                blockItems.add(items.get(i));
+            }
+
+            if (!block.insert) queue.removeAll(blockItems);
+
+            int position = block.anchor == QueueDiff.END ? queue.size() : queue.indexOf(items.get(block.anchor));
+            assertTrue("Anchor " + block.anchor + " isn't queued", position >= 0);
+
+            queue.addAll(position, blockItems);
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (Object item : queue) {
+            keys.add(item instanceof Integer ? current.get((Integer) item)
+                    : wanted.get(Integer.parseInt(((String) item).substring(3))));
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,134 @@
+package com.mradzinski.caster;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueueWindowTest {
+    private static final int WINDOW_SIZE = 20;
+    private static final int KEPT_PLAYED = 1;
+    private static final int PLAYLIST_SIZE = 5000;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowMustBeLargerThanTheKeptItems() {
+        new QueueWindow(KEPT_PLAYED, KEPT_PLAYED);
+    }
+
+    @Test
+    public void firstPageFillsTheWindow() {
+        QueueWindow window = new QueueWindow(WINDOW_SIZE, KEPT_PLAYED);
+        window.reset(7);
+
+        assertEquals(6, window.getFirstKept(7));
+        assertEquals(7, window.getFetchIndex(7));
+        assertEquals(WINDOW_SIZE - 1, window.getFetchCount(7, 7));
+    }
+
+    @Test
+    public void nothingIsFetchedWhileAPageIsLoading() {
+        QueueWindow window = new QueueWindow(WINDOW_SIZE, KEPT_PLAYED);
+        window.reset(0);
+        window.onFetchStarted();
+
+        assertEquals(0, window.getFetchCount(0, 0));
+    }
+
+    @Test
+    public void shortPageEndsThePlaylist() {
+        QueueWindow window = new QueueWindow(WINDOW_SIZE, KEPT_PLAYED);
+        window.reset(0);
+        window.onFetchStarted();
+        window.onPageLoaded(0, WINDOW_SIZE, 5);
+
+        assertTrue(window.isEndReached(5));
+        assertEquals(0, window.getFetchCount(4, 5));
+    }
+
+    @Test
+    public void failedPageIsFetchedAgain() {
+        QueueWindow window = new QueueWindow(WINDOW_SIZE, KEPT_PLAYED);
+        window.reset(0);
+        window.onFetchStarted();
+        window.onPageLoaded(0, WINDOW_SIZE, WINDOW_SIZE);
+        window.onQueueingFailed(0);
+
+        assertEquals(0, window.getFetchIndex(0));
+        assertEquals(WINDOW_SIZE, window.getFetchCount(0, 0));
+    }
+
+    /**
+     * Plays a long playlist to the end, the pages being queued one status update after they're
+     * fetched like on a receiver.
+     */
+    @Test
+    public void longPlaylistIsPlayedInOrderWithinTheWindow() {
+        QueueWindow window = new QueueWindow(WINDOW_SIZE, KEPT_PLAYED);
+        int startIndex = 7;
+        window.reset(startIndex);
+
+        LinkedList<Integer> queue = new LinkedList<>();
+        int[] pendingPage = fetch(window, startIndex, startIndex);
+        addPage(queue, pendingPage);
+        pendingPage = null;
+
+        int current = startIndex;
+        int maxQueued = queue.size();
+
+        while (true) {
+            if (pendingPage != null) {
+                addPage(queue, pendingPage);
+                pendingPage = null;
+            }
+
+            int trimIndex = window.getTrimIndex(current, queue.getFirst());
+            if (trimIndex != QueueWindow.UNKNOWN) {
+                window.onTrimRequested(trimIndex);
+                while (queue.getFirst() < trimIndex) {
+                    queue.removeFirst();
+                }
+            }
+
+            pendingPage = fetch(window, current, queue.getLast() + 1);
+            maxQueued = Math.max(maxQueued, queue.size());
+
+            int position = queue.indexOf(current);
+            assertTrue("Item " + current + " isn't queued", position >= 0);
+
+            if (position + 1 == queue.size()) {
+                if (pendingPage != null) continue;
+                break;
+            }
+
+            assertEquals(current + 1, (int) queue.get(position + 1));
+            current++;
+        }
+
+        assertEquals(PLAYLIST_SIZE - 1, current);
+        assertTrue("The queue held " + maxQueued + " items", maxQueued <= WINDOW_SIZE - KEPT_PLAYED);
+    }
+
+    /**
+     * @return the index and the size of the page received, or null if none was needed
+     */
+    private static int[] fetch(QueueWindow window, int currentIndex, int queuedEnd) {
+        int count = window.getFetchCount(currentIndex, queuedEnd);
+        if (count <= 0) return null;
+
+        int fetchIndex = window.getFetchIndex(queuedEnd);
+        int received = Math.max(0, Math.min(count, PLAYLIST_SIZE - fetchIndex));
+
+        window.onFetchStarted();
+        window.onPageLoaded(fetchIndex, count, received);
+
+        return received > 0 ? new int[] {fetchIndex, received} : null;
+    }
+
+    private static void addPage(LinkedList<Integer> queue, int[] page) {
+        for (int i = page[0]; i < page[0] + page[1]; i++) {
+            queue.add(i);
+        }
+    }
+}
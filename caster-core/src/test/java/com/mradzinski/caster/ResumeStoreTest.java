@@ -0,0 +1,218 @@
+package com.mradzinski.caster;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResumeStoreTest {
+    private static final String URL = "https://example.com/video.mp4";
+    private static final long DURATION = 600000L;
+    // Header, then writeUTF's length, the URL, the position and the CRC
+    private static final int HEADER_SIZE = 4;
+    private static final int RECORD_SIZE = 2 + URL.length() + 8 + 4;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private SimulatedScheduler scheduler;
+    private File file;
+
+    @Before
+    public void setUp() {
+        scheduler = new SimulatedScheduler();
+        file = new File(folder.getRoot(), "resume.log");
+    }
+
+    @Test
+    public void positionsAreKeptInMemory() {
+        ResumeStore store = new ResumeStore(null, scheduler, DIRECT);
+        store.record(URL, 60000L, DURATION);
+
+        assertTrue(store.isLoaded());
+        assertEquals(60000L, store.getPosition(URL));
+        assertEquals(0, scheduler.getPendingTaskCount());
+    }
+
+    @Test
+    public void positionsNearTheStartOrTheEndAreForgotten() {
+        ResumeStore store = new ResumeStore(null, scheduler, DIRECT);
+
+        store.record(URL, 60000L, DURATION);
+        store.record(URL, ResumeStore.MIN_RESUME_POSITION_MS - 1, DURATION);
+        assertEquals(ResumeStore.NO_POSITION, store.getPosition(URL));
+
+        store.record(URL, 60000L, DURATION);
+        store.record(URL, DURATION - ResumeStore.FINISHED_MARGIN_MS, DURATION);
+        assertEquals(ResumeStore.NO_POSITION, store.getPosition(URL));
+
+        store.record(URL, 60000L, DURATION);
+        store.remove(URL);
+        assertEquals(ResumeStore.NO_POSITION, store.getPosition(URL));
+    }
+
+    @Test
+    public void recordsAreBatchedUntilTheFlushDelay() {
+        ResumeStore store = new ResumeStore(file, scheduler, DIRECT);
+
+        for (long position = 20000L; position < 80000L; position += 1000L) {
+            store.record(URL, position, DURATION);
+        }
+
+        assertFalse(file.exists());
+
+        scheduler.advanceBy(ResumeStore.FLUSH_DELAY_MS);
+
+        // Collapsed to the latest position
+        assertEquals(HEADER_SIZE + RECORD_SIZE, file.length());
+        assertEquals(79000L, new ResumeStore(file, scheduler, DIRECT).getPosition(URL));
+    }
+
+    @Test
+    public void logStartsWithTheFormatAndEndsWithTheChecksum() throws IOException {
+        ResumeStore store = new ResumeStore(file, scheduler, DIRECT);
+        store.record(URL, 42000L, DURATION);
+        store.flush();
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+
+        try {
+            assertEquals(0x43525331, in.readInt());
+            assertEquals(URL, in.readUTF());
+            assertEquals(42000L, in.readLong());
+            in.readInt();
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void forgottenMediaStaysForgottenAfterReload() {
+        ResumeStore store = new ResumeStore(file, scheduler, DIRECT);
+        store.record(URL, 42000L, DURATION);
+        store.flush();
+        store.remove(URL);
+        store.flush();
+
+        assertEquals(ResumeStore.NO_POSITION, new ResumeStore(file, scheduler, DIRECT).getPosition(URL));
+    }
+
+    @Test
+    public void tornRecordIsIgnored() throws IOException {
+        ResumeStore store = new ResumeStore(file, scheduler, DIRECT);
+        store.record(URL, 42000L, DURATION);
+        store.flush();
+        store.record(URL, 84000L, DURATION);
+        store.flush();
+
+        // The process died while appending the second record
+        truncate(file, HEADER_SIZE + RECORD_SIZE + 5);
+
+        assertEquals(42000L, new ResumeStore(file, scheduler, DIRECT).getPosition(URL));
+    }
+
+    @Test
+    public void damagedRecordIsRejectedByItsChecksum() throws IOException {
+        ResumeStore store = new ResumeStore(file, scheduler, DIRECT);
+        store.record(URL, 42000L, DURATION);
+        store.flush();
+        store.record(URL, 84000L, DURATION);
+        store.flush();
+
+        // Flips a bit of the second position
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            long offset = HEADER_SIZE + RECORD_SIZE + 2 + URL.length() + 7;
+            raf.seek(offset);
+            int value = raf.read();
+            raf.seek(offset);
+            raf.write(value ^ 1);
+        } finally {
+            raf.close();
+        }
+
+        ResumeStore reloaded = new ResumeStore(file, scheduler, DIRECT);
+        assertEquals(42000L, reloaded.getPosition(URL));
+
+        // The damaged log is rewritten by the next batch
+        reloaded.record(URL, 90000L, DURATION);
+        reloaded.flush();
+
+        assertEquals(HEADER_SIZE + RECORD_SIZE, file.length());
+        assertEquals(90000L, new ResumeStore(file, scheduler, DIRECT).getPosition(URL));
+    }
+
+    @Test
+    public void logIsCompactedOnceMostRecordsAreStale() {
+        ResumeStore store = new ResumeStore(file, scheduler, DIRECT);
+        long largest = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            store.record(URL, 20000L + i * 100L, DURATION);
+            store.flush();
+            largest = Math.max(largest, file.length());
+        }
+
+        // One media never needs more than the compaction threshold of records
+        assertTrue("The log reached " + largest + " bytes", largest <= HEADER_SIZE + 258 * RECORD_SIZE);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertEquals(20000L + 999 * 100L, new ResumeStore(file, scheduler, DIRECT).getPosition(URL));
+    }
+
+    @Test
+    public void onlyTheMostRecentlyPlayedMediaAreRemembered() {
+        ResumeStore store = new ResumeStore(file, scheduler, DIRECT);
+
+        for (int i = 0; i <= ResumeStore.MAX_ENTRIES; i++) {
+            store.record(URL + "?" + i, 42000L, DURATION);
+        }
+
+        store.flush();
+
+        ResumeStore reloaded = new ResumeStore(file, scheduler, DIRECT);
+        assertEquals(ResumeStore.NO_POSITION, reloaded.getPosition(URL + "?0"));
+        assertEquals(42000L, reloaded.getPosition(URL + "?1"));
+        assertEquals(42000L, reloaded.getPosition(URL + "?" + ResumeStore.MAX_ENTRIES));
+    }
+
+    @Test
+    public void clearForgetsTheLog() {
+        ResumeStore store = new ResumeStore(file, scheduler, DIRECT);
+        store.record(URL, 42000L, DURATION);
+        store.flush();
+        store.clear();
+
+        assertEquals(ResumeStore.NO_POSITION, store.getPosition(URL));
+        assertEquals(ResumeStore.NO_POSITION, new ResumeStore(file, scheduler, DIRECT).getPosition(URL));
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+}
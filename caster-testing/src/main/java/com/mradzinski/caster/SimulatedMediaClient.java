@@ -0,0 +1,522 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In-memory Cast receiver implementing {@link MediaClient}. It plays one media at a time through the
+ * same status sequences as a real receiver (buffering, playing, paused, stalls, idle with a reason) and
+ * answers commands after a configurable network delay and jitter, dropping some of them.
+ *
+ * <p>Everything runs on the given {@link Scheduler} and must be called from its thread. With a
+ * {@link SimulatedScheduler} hours of playback and thousands of status updates per second take
+ * only milliseconds.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SimulatedMediaClient implements MediaClient {
+    /** Same value as CommonStatusCodes.SUCCESS */
+    public static final int STATUS_SUCCESS = 0;
+    /** Same value as CommonStatusCodes.TIMEOUT, the result of a dropped command */
+    public static final int STATUS_TIMEOUT = 15;
+    /** Same value as CastStatusCodes.INVALID_REQUEST, the result of a command sent without media */
+    public static final int STATUS_INVALID_REQUEST = 2001;
+
+    private final Clock clock;
+    private final Scheduler scheduler;
+    private final Random random;
+    private final long networkDelayMs;
+    private final long jitterMs;
+    private final double dropRate;
+    private final long commandTimeoutMs;
+    private final long bufferingMs;
+    private final long statusIntervalMs;
+    private final double stallRate;
+    private final long stallMs;
+    private final double loadErrorRate;
+
+    private final ListenerSet<Listener> listeners = new ListenerSet<>();
+    private final List<ProgressTicker> progressTickers = new ArrayList<>();
+
+    private String contentId;
+    private long duration = CasterStatus.UNKNOWN_DURATION;
+    private int playerState = PLAYER_STATE_UNKNOWN;
+    private int idleReason = IDLE_REASON_NONE;
+    private int stateAfterBuffering = PLAYER_STATE_PLAYING;
+    private long position = 0;
+    private long positionUpdatedAt = 0;
+    private double playbackRate = 1.0;
+    private double volume = 1.0;
+
+    private long sentCommandCount = 0;
+    private long droppedCommandCount = 0;
+    private long statusUpdateCount = 0;
+
+    private final Runnable bufferingDone = new Runnable() {
+        @Override
+        public void run() {
+            setState(stateAfterBuffering, IDLE_REASON_NONE);
+        }
+    };
+
+    private final Runnable endOfStream = new Runnable() {
+        @Override
+        public void run() {
+            position = duration;
+            setState(PLAYER_STATE_IDLE, IDLE_REASON_FINISHED);
+        }
+    };
+
+    private final Runnable statusTick = new Runnable() {
+        @Override
+        public void run() {
+            if (playerState != PLAYER_STATE_PLAYING) return;
+
+            if (stallRate > 0 && random.nextDouble() < stallRate) {
+                startBuffering(PLAYER_STATE_PLAYING, stallMs);
+                return;
+            }
+
+            notifyStatusUpdated();
+            scheduler.postDelayed(this, statusIntervalMs);
+        }
+    };
+
+    private SimulatedMediaClient(Builder builder) {
+        this.clock = builder.clock;
+        this.scheduler = builder.scheduler;
+        this.random = new Random(builder.seed);
+        this.networkDelayMs = builder.networkDelayMs;
+        this.jitterMs = builder.jitterMs;
+        this.dropRate = builder.dropRate;
+        this.commandTimeoutMs = builder.commandTimeoutMs;
+        this.bufferingMs = builder.bufferingMs;
+        this.statusIntervalMs = builder.statusIntervalMs;
+        this.stallRate = builder.stallRate;
+        this.stallMs = builder.stallMs;
+        this.loadErrorRate = builder.loadErrorRate;
+    }
+
+    /**
+     * Loads a media on the receiver. It buffers first and then plays or stays paused.
+     *
+     * @param contentId The content id (usually the URL) of the media
+     * @param duration The duration of the media, in milliseconds
+     * @param autoPlay True if the media should start automatically
+     * @param startPosition Start position, in milliseconds
+     */
+    public @NonNull PendingCommand load(@NonNull final String contentId, final long duration, final boolean autoPlay,
+                                        final long startPosition) {
+        return send(new Request() {
+            @Override
+            int apply() {
+                SimulatedMediaClient.this.contentId = contentId;
+                SimulatedMediaClient.this.duration = duration;
+                position = Math.max(0, Math.min(startPosition, duration));
+                positionUpdatedAt = clock.now();
+
+                if (loadErrorRate > 0 && random.nextDouble() < loadErrorRate) {
+                    setState(PLAYER_STATE_IDLE, IDLE_REASON_ERROR);
+                } else {
+                    startBuffering(autoPlay ? PLAYER_STATE_PLAYING : PLAYER_STATE_PAUSED, bufferingMs);
+                }
+
+                return STATUS_SUCCESS;
+            }
+        });
+    }
+
+    /**
+     * Stops the current media, like another sender or the TV remote would.
+     */
+    public void stop() {
+        if (contentId == null) return;
+
+        setState(PLAYER_STATE_IDLE, IDLE_REASON_CANCELED);
+    }
+
+    @Override
+    public @Nullable CasterStatus getStatus(long timestamp) {
+        if (contentId == null) return null;
+
+        return new CasterStatus(playerState, idleReason, getApproximateStreamPosition(), duration, playbackRate,
+                volume, contentId, timestamp);
+    }
+
+    @Override
+    public long getApproximateStreamPosition() {
+        if (playerState != PLAYER_STATE_PLAYING) return position;
+
+        long elapsed = (long) ((clock.now() - positionUpdatedAt) * playbackRate);
+        return duration >= 0 ? Math.min(position + elapsed, duration) : position + elapsed;
+    }
+
+    @Override
+    public @NonNull PendingCommand play() {
+        return send(new Request() {
+            @Override
+            int apply() {
+                if (contentId == null || playerState == PLAYER_STATE_IDLE) return STATUS_INVALID_REQUEST;
+
+                if (playerState == PLAYER_STATE_BUFFERING) {
+                    stateAfterBuffering = PLAYER_STATE_PLAYING;
+                } else if (playerState == PLAYER_STATE_PAUSED) {
+                    setState(PLAYER_STATE_PLAYING, IDLE_REASON_NONE);
+                }
+
+                return STATUS_SUCCESS;
+            }
+        });
+    }
+
+    @Override
+    public @NonNull PendingCommand pause() {
+        return send(new Request() {
+            @Override
+            int apply() {
+                if (contentId == null || playerState == PLAYER_STATE_IDLE) return STATUS_INVALID_REQUEST;
+
+                if (playerState == PLAYER_STATE_BUFFERING) {
+                    stateAfterBuffering = PLAYER_STATE_PAUSED;
+                } else if (playerState == PLAYER_STATE_PLAYING) {
+                    setState(PLAYER_STATE_PAUSED, IDLE_REASON_NONE);
+                }
+
+                return STATUS_SUCCESS;
+            }
+        });
+    }
+
+    @Override
+    public @NonNull PendingCommand seek(final long position) {
+        return send(new Request() {
+            @Override
+            int apply() {
+                if (contentId == null || playerState == PLAYER_STATE_IDLE) return STATUS_INVALID_REQUEST;
+
+                int resumeState = playerState == PLAYER_STATE_BUFFERING ? stateAfterBuffering : playerState;
+
+                SimulatedMediaClient.this.position = duration >= 0 ? Math.max(0, Math.min(position, duration)) : position;
+                positionUpdatedAt = clock.now();
+                startBuffering(resumeState, bufferingMs);
+
+                return STATUS_SUCCESS;
+            }
+        });
+    }
+
+    @Override
+    public @NonNull PendingCommand setStreamVolume(final double volume) {
+        return send(new Request() {
+            @Override
+            int apply() {
+                SimulatedMediaClient.this.volume = volume;
+                notifyStatusUpdated();
+
+                return STATUS_SUCCESS;
+            }
+        });
+    }
+
+    @Override
+    public @NonNull PendingCommand setPlaybackRate(final double rate) {
+        return send(new Request() {
+            @Override
+            int apply() {
+                if (contentId == null) return STATUS_INVALID_REQUEST;
+
+                position = getApproximateStreamPosition();
+                positionUpdatedAt = clock.now();
+                playbackRate = rate;
+
+                if (playerState == PLAYER_STATE_PLAYING) scheduleEndOfStream();
+                notifyStatusUpdated();
+
+                return STATUS_SUCCESS;
+            }
+        });
+    }
+
+    @Override
+    public @NonNull PendingCommand requestStatus() {
+        return send(new Request() {
+            @Override
+            int apply() {
+                notifyStatusUpdated();
+
+                return STATUS_SUCCESS;
+            }
+        });
+    }
+
+    @Override
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void addProgressListener(@NonNull ProgressListener progressListener, long intervalMs) {
+        ProgressTicker ticker = new ProgressTicker(progressListener, Math.max(1, intervalMs));
+
+        progressTickers.add(ticker);
+        scheduler.postDelayed(ticker, ticker.intervalMs);
+    }
+
+    @Override
+    public void removeProgressListener(@NonNull ProgressListener progressListener) {
+        for (int i = progressTickers.size() - 1; i >= 0; i--) {
+            ProgressTicker ticker = progressTickers.get(i);
+
+            if (ticker.progressListener == progressListener) {
+                scheduler.cancel(ticker);
+                progressTickers.remove(i);
+            }
+        }
+    }
+
+    /**
+     * @return the number of commands sent to this receiver, including the dropped ones
+     */
+    public long getSentCommandCount() {
+        return sentCommandCount;
+    }
+
+    /**
+     * @return the number of commands which never reached the receiver and timed out
+     */
+    public long getDroppedCommandCount() {
+        return droppedCommandCount;
+    }
+
+    /**
+     * @return the number of status updates sent to the listeners
+     */
+    public long getStatusUpdateCount() {
+        return statusUpdateCount;
+    }
+
+    private PendingCommand send(final Request request) {
+        final SimulatedCommand command = new SimulatedCommand();
+        sentCommandCount++;
+
+        if (dropRate > 0 && random.nextDouble() < dropRate) {
+            droppedCommandCount++;
+            scheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    command.complete(STATUS_TIMEOUT);
+                }
+            }, commandTimeoutMs);
+
+            return command;
+        }
+
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                final int statusCode = request.apply();
+
+                scheduler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        command.complete(statusCode);
+                    }
+                }, networkDelay());
+            }
+        }, networkDelay());
+
+        return command;
+    }
+
+    private long networkDelay() {
+        return networkDelayMs + (jitterMs > 0 ? (long) (random.nextDouble() * jitterMs) : 0);
+    }
+
+    private void startBuffering(int stateAfterBuffering, long durationMs) {
+        this.stateAfterBuffering = stateAfterBuffering;
+
+        scheduler.cancel(bufferingDone);
+        setState(PLAYER_STATE_BUFFERING, IDLE_REASON_NONE);
+        scheduler.postDelayed(bufferingDone, durationMs);
+    }
+
+    private void setState(int playerState, int idleReason) {
+        position = getApproximateStreamPosition();
+        positionUpdatedAt = clock.now();
+
+        scheduler.cancel(endOfStream);
+        scheduler.cancel(statusTick);
+
+        if (playerState != PLAYER_STATE_BUFFERING) scheduler.cancel(bufferingDone);
+
+        this.playerState = playerState;
+        this.idleReason = idleReason;
+
+        if (playerState == PLAYER_STATE_PLAYING) {
+            scheduleEndOfStream();
+            if (statusIntervalMs > 0) scheduler.postDelayed(statusTick, statusIntervalMs);
+        }
+
+        notifyStatusUpdated();
+    }
+
+    private void scheduleEndOfStream() {
+        scheduler.cancel(endOfStream);
+        if (duration < 0 || playbackRate <= 0) return;
+
+        scheduler.postDelayed(endOfStream, (long) Math.ceil((duration - position) / playbackRate));
+    }
+
+    private void notifyStatusUpdated() {
+        statusUpdateCount++;
+
+        for (Object listener : listeners.getListeners()) {
+            ((Listener) listener).onStatusUpdated();
+        }
+    }
+
+    private abstract static class Request {
+        /**
+         * Applies the request on the receiver.
+         *
+         * @return the status code of the result
+         */
+        abstract int apply();
+    }
+
+    private static final class SimulatedCommand implements PendingCommand {
+        private ResultListener resultListener;
+        private boolean completed = false;
+        private int statusCode;
+
+        @Override
+        public void setResultListener(@NonNull ResultListener resultListener) {
+            this.resultListener = resultListener;
+
+            if (completed) resultListener.onResult(statusCode, statusCode == STATUS_SUCCESS);
+        }
+
+        void complete(int statusCode) {
+            this.statusCode = statusCode;
+            this.completed = true;
+
+            if (resultListener != null) resultListener.onResult(statusCode, statusCode == STATUS_SUCCESS);
+        }
+    }
+
+    private final class ProgressTicker implements Runnable {
+        private final ProgressListener progressListener;
+        private final long intervalMs;
+
+        ProgressTicker(ProgressListener progressListener, long intervalMs) {
+            this.progressListener = progressListener;
+            this.intervalMs = intervalMs;
+        }
+
+        @Override
+        public void run() {
+            if (contentId != null) progressListener.onProgressUpdated(getApproximateStreamPosition(), duration);
+
+            scheduler.postDelayed(this, intervalMs);
+        }
+    }
+
+    public static class Builder {
+        private final Clock clock;
+        private final Scheduler scheduler;
+        private long seed = 0;
+        private long networkDelayMs = 20;
+        private long jitterMs = 10;
+        private double dropRate = 0;
+        private long commandTimeoutMs = 10000;
+        private long bufferingMs = 500;
+        private long statusIntervalMs = 1000;
+        private double stallRate = 0;
+        private long stallMs = 1000;
+        private double loadErrorRate = 0;
+
+        /**
+         * @param clock Clock of the scheduler, e.g. a {@link SimulatedScheduler}
+         * @param scheduler Scheduler everything runs on, e.g. a {@link SimulatedScheduler}
+         */
+        public Builder(@NonNull Clock clock, @NonNull Scheduler scheduler) {
+            this.clock = clock;
+            this.scheduler = scheduler;
+        }
+
+        /**
+         * Sets the seed of the random generator, so runs can be reproduced. Defaults to 0.
+         */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the one-way network delay and the maximum random jitter added to it. A command takes
+         * two delays to be answered. Defaults to 20 ms and 10 ms.
+         */
+        public Builder setNetworkDelay(long networkDelayMs, long jitterMs) {
+            this.networkDelayMs = Math.max(0, networkDelayMs);
+            this.jitterMs = Math.max(0, jitterMs);
+            return this;
+        }
+
+        /**
+         * Sets the probability, between 0.0 and 1.0, that a command never reaches the receiver. Its result
+         * is {@link #STATUS_TIMEOUT} after the given timeout. Defaults to 0.0 and 10000 ms.
+         */
+        public Builder setDropRate(double dropRate, long commandTimeoutMs) {
+            this.dropRate = dropRate;
+            this.commandTimeoutMs = Math.max(0, commandTimeoutMs);
+            return this;
+        }
+
+        /**
+         * Sets how long the receiver buffers after a load or a seek. Defaults to 500 ms.
+         */
+        public Builder setBufferingTime(long bufferingMs) {
+            this.bufferingMs = Math.max(0, bufferingMs);
+            return this;
+        }
+
+        /**
+         * Sets the interval of the status updates sent while playing, 0 to send them only on state
+         * changes. Defaults to 1000 ms.
+         */
+        public Builder setStatusInterval(long statusIntervalMs) {
+            this.statusIntervalMs = Math.max(0, statusIntervalMs);
+            return this;
+        }
+
+        /**
+         * Sets the probability, between 0.0 and 1.0, that the playback stalls at each status update and
+         * how long it stays buffering. Defaults to 0.0 and 1000 ms.
+         */
+        public Builder setStallRate(double stallRate, long stallMs) {
+            this.stallRate = stallRate;
+            this.stallMs = Math.max(0, stallMs);
+            return this;
+        }
+
+        /**
+         * Sets the probability, between 0.0 and 1.0, that a load ends with an error. Defaults to 0.0.
+         */
+        public Builder setLoadErrorRate(double loadErrorRate) {
+            this.loadErrorRate = loadErrorRate;
+            return this;
+        }
+
+        public SimulatedMediaClient build() {
+            return new SimulatedMediaClient(this);
+        }
+    }
+}
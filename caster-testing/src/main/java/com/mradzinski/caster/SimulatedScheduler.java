@@ -0,0 +1,80 @@
+package com.mradzinski.caster;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * {@link Clock} and {@link Scheduler} running on virtual time. Nothing runs until the time is advanced
+ * with {@link #advanceBy(long)}, which runs every due task in order on the calling thread, so hours of
+ * simulated playback take milliseconds.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SimulatedScheduler implements Clock, Scheduler {
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long now = 0;
+    private long sequence = 0;
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        tasks.add(new Task(now + Math.max(0, delayMs), sequence++, task));
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        Iterator<Task> iterator = tasks.iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().runnable == task) iterator.remove();
+        }
+    }
+
+    /**
+     * Moves the time forward, running every task which is due meanwhile. Tasks posted by those tasks
+     * run too if they're due.
+     *
+     * @param durationMs The amount of time to move forward, in milliseconds
+     * @return the number of tasks which were run
+     */
+    public int advanceBy(long durationMs) {
+        long target = now + Math.max(0, durationMs);
+        int count = 0;
+
+        while (!tasks.isEmpty() && tasks.peek().time <= target) {
+            Task task = tasks.poll();
+            now = task.time;
+            task.runnable.run();
+            count++;
+        }
+
+        now = target;
+        return count;
+    }
+
+    public int getPendingTaskCount() {
+        return tasks.size();
+    }
+
+    private static final class Task implements Comparable<Task> {
+        private final long time;
+        private final long sequence;
+        private final Runnable runnable;
+
+        Task(long time, long sequence, Runnable runnable) {
+            this.time = time;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (time != other.time) return time < other.time ? -1 : 1;
+            if (sequence != other.sequence) return sequence < other.sequence ? -1 : 1;
+            return 0;
+        }
+    }
+}
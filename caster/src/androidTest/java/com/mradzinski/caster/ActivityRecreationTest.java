@@ -0,0 +1,142 @@
+package com.mradzinski.caster;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.test.runner.lifecycle.ActivityLifecycleMonitorRegistry;
+import android.support.test.runner.lifecycle.Stage;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Recreates an Activity using Caster many times, like rotations do, and checks that nothing
+ * Caster registers piles up and that the destroyed Activities can be collected.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ActivityRecreationTest {
+    private static final int RECREATIONS = 1000;
+    private static final long RECREATION_TIMEOUT_MS = 10000L;
+    private static final int GC_ATTEMPTS = 20;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private RecreatedActivity activity;
+
+    @After
+    public void tearDown() {
+        if (activity != null) activity.finish();
+        activity = null;
+    }
+
+    @Test
+    public void registrationsStayFlatAcrossRecreations() throws Exception {
+        Intent intent = new Intent(instrumentation.getTargetContext(), RecreatedActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        activity = (RecreatedActivity) instrumentation.startActivitySync(intent);
+        assumeFalse("Google Play services isn't available", activity.caster instanceof CasterNoOp);
+
+        int registrations = onMainThread(liveRegistrationCount);
+        int attachments = onMainThread(attachmentCount);
+        assertEquals(1, attachments);
+
+        List<WeakReference<Activity>> destroyedActivities = new ArrayList<>(RECREATIONS);
+
+        for (int i = 1; i <= RECREATIONS; i++) {
+            destroyedActivities.add(new WeakReference<Activity>(activity));
+            activity = recreate(activity);
+
+            assertEquals("Live registrations after " + i + " recreations",
+                    registrations, (int) onMainThread(liveRegistrationCount));
+            assertEquals("Attachments after " + i + " recreations",
+                    attachments, (int) onMainThread(attachmentCount));
+        }
+
+        assertEquals("Destroyed Activities still reachable", 0, countReachable(destroyedActivities));
+    }
+
+    private RecreatedActivity recreate(final RecreatedActivity previous) throws Exception {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                previous.recreate();
+            }
+        });
+
+        long deadline = SystemClock.uptimeMillis() + RECREATION_TIMEOUT_MS;
+
+        while (SystemClock.uptimeMillis() < deadline) {
+            instrumentation.waitForIdleSync();
+
+            RecreatedActivity current = onMainThread(new Callable<RecreatedActivity>() {
+                @Override
+                public RecreatedActivity call() {
+                    Collection<Activity> resumed = ActivityLifecycleMonitorRegistry.getInstance()
+                            .getActivitiesInStage(Stage.RESUMED);
+
+                    for (Activity resumedActivity : resumed) {
+                        if (resumedActivity instanceof RecreatedActivity && resumedActivity != previous) {
+                            return (RecreatedActivity) resumedActivity;
+                        }
+                    }
+
+                    return null;
+                }
+            });
+
+            if (current != null) return current;
+        }
+
+        throw new AssertionError("The Activity wasn't recreated in time");
+    }
+
+    private static int countReachable(List<WeakReference<Activity>> references) throws InterruptedException {
+        int reachable = references.size();
+
+        for (int attempt = 0; attempt < GC_ATTEMPTS && reachable > 0; attempt++) {
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            Thread.sleep(100);
+
+            reachable = 0;
+            for (WeakReference<Activity> reference : references) {
+                if (reference.get() != null) reachable++;
+            }
+        }
+
+        return reachable;
+    }
+
+    private <T> T onMainThread(Callable<T> callable) throws Exception {
+        FutureTask<T> task = new FutureTask<>(callable);
+        instrumentation.runOnMainSync(task);
+        return task.get();
+    }
+
+    private final Callable<Integer> liveRegistrationCount = new Callable<Integer>() {
+        @Override
+        public Integer call() {
+            return Caster.getLiveRegistrationCount();
+        }
+    };
+
+    private final Callable<Integer> attachmentCount = new Callable<Integer>() {
+        @Override
+        public Integer call() {
+            return CastSessionController.getAttachmentCount();
+        }
+    };
+}
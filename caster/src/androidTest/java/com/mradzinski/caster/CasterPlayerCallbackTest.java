@@ -0,0 +1,277 @@
+package com.mradzinski.caster;
+
+import android.app.Instrumentation;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaLoadOptions;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Loads media many times through a {@link CasterPlayer} connected to a fake receiver, and checks
+ * that the callbacks registered on the {@link RemoteMediaClient} stay bounded and are all
+ * unregistered when the client changes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CasterPlayerCallbackTest {
+    private static final int LOADS = 1000;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private StatusDispatcher statusDispatcher;
+    private CasterPlayer casterPlayer;
+    private FakeReceiver receiver;
+    private int registrations;
+
+    @Before
+    public void setUp() throws Exception {
+        final CasterMetrics metrics = new CasterMetricsNoOp();
+        statusDispatcher = new StatusDispatcher(AndroidPlatform.INSTANCE, metrics);
+        receiver = new FakeReceiver();
+
+        casterPlayer = onMainThread(new Callable<CasterPlayer>() {
+            @Override
+            public CasterPlayer call() {
+                CasterPlayer player = new CasterPlayer(new CasterPlayer.OnMediaLoadedListener() {
+                    @Override
+                    public void onMediaLoaded() {
+                        //no-op
+                    }
+                }, metrics, statusDispatcher);
+
+                player.setRemoteMediaClient(receiver.client);
+                return player;
+            }
+        });
+
+        registrations = onMainThread(liveRegistrationCount);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        setRemoteMediaClient(null);
+    }
+
+    @Test
+    public void registrationsStayFlatAcrossPlayedLoads() throws Exception {
+        for (int i = 1; i <= LOADS; i++) {
+            LoadHandle handle = load(i);
+            assertTrue("Load " + i + " wasn't sent", handle.isLoadSent());
+
+            deliverStatus(MediaStatus.PLAYER_STATE_BUFFERING);
+            deliverStatus(MediaStatus.PLAYER_STATE_PLAYING);
+
+            assertTrue("Load " + i + " never saw its media playing", handle.getFirstPlayingAt() != LoadHandle.NOT_YET);
+            assertEquals("Callbacks left after " + i + " loads", 0, receiver.getRegisteredCount());
+            assertEquals("Live registrations after " + i + " loads", registrations,
+                    (int) onMainThread(liveRegistrationCount));
+        }
+
+        assertTrue(receiver.maxRegistered <= CallbackRegistry.MAX_CALLBACKS);
+    }
+
+    @Test
+    public void unplayedLoadsNeverPileUp() throws Exception {
+        List<LoadHandle> handles = new ArrayList<>();
+
+        for (int i = 1; i <= LOADS; i++) {
+            handles.add(load(i));
+
+            assertTrue("Callbacks registered after " + i + " loads: " + receiver.getRegisteredCount(),
+                    receiver.getRegisteredCount() <= CallbackRegistry.MAX_CALLBACKS);
+            assertTrue(onMainThread(liveRegistrationCount) - registrations <= CallbackRegistry.MAX_CALLBACKS);
+        }
+
+        int refused = 0;
+        for (LoadHandle handle : handles) {
+            if (handle.isFailed()) {
+                assertTrue(handle.getError() instanceof IllegalStateException);
+                refused++;
+            }
+        }
+
+        // One slot is taken by the media loaded callback
+        assertEquals(CallbackRegistry.MAX_CALLBACKS - 1, LOADS - refused);
+        assertEquals(CallbackRegistry.MAX_CALLBACKS, receiver.getRegisteredCount());
+
+        // Waiting for media which will never play on the new client
+        FakeReceiver other = new FakeReceiver();
+        setRemoteMediaClient(other.client);
+
+        assertEquals(0, receiver.getRegisteredCount());
+        assertEquals(0, other.getRegisteredCount());
+        assertEquals(registrations, (int) onMainThread(liveRegistrationCount));
+
+        for (LoadHandle handle : handles) {
+            assertTrue(handle.isFailed());
+        }
+    }
+
+    @Test
+    public void switchingClientsUnregistersEveryCallback() throws Exception {
+        FakeReceiver previous = receiver;
+
+        for (int i = 1; i <= LOADS; i++) {
+            load(i);
+            assertTrue(receiver.getRegisteredCount() > 0);
+
+            FakeReceiver next = new FakeReceiver();
+            setRemoteMediaClient(next.client);
+            receiver = next;
+
+            assertEquals("Callbacks left on the previous client after " + i + " switches",
+                    0, previous.getRegisteredCount());
+            assertEquals(registrations, (int) onMainThread(liveRegistrationCount));
+            previous = next;
+        }
+
+        setRemoteMediaClient(null);
+        assertEquals(0, receiver.getRegisteredCount());
+        assertEquals(registrations, (int) onMainThread(liveRegistrationCount));
+    }
+
+    private LoadHandle load(int index) {
+        MediaData mediaData = new MediaData.Builder("https://example.com/video-" + index + ".mp4")
+                .setStreamType(MediaData.STREAM_TYPE_BUFFERED)
+                .setContentType("video/mp4")
+                .build();
+
+        // Prepared right away, sent once the main thread is idle
+        LoadHandle handle = casterPlayer.loadMediaAndPlayAsync(mediaData, DIRECT);
+        instrumentation.waitForIdleSync();
+
+        return handle;
+    }
+
+    private void deliverStatus(final int playerState) {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                receiver.setPlayerState(playerState);
+                // Caster's media listener is registered first
+                statusDispatcher.onStatusUpdated();
+
+                for (RemoteMediaClient.Callback callback : receiver.getRegistered()) {
+                    callback.onStatusUpdated();
+                }
+            }
+        });
+    }
+
+    private void setRemoteMediaClient(final RemoteMediaClient client) {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                casterPlayer.setRemoteMediaClient(client);
+            }
+        });
+    }
+
+    private <T> T onMainThread(Callable<T> callable) throws Exception {
+        FutureTask<T> task = new FutureTask<>(callable);
+        instrumentation.runOnMainSync(task);
+        return task.get();
+    }
+
+    private final Callable<Integer> liveRegistrationCount = new Callable<Integer>() {
+        @Override
+        public Integer call() {
+            return CallbackRegistry.getLiveRegistrationCount();
+        }
+    };
+
+    /**
+     * Receiver which accepts every load in a new media session, and only sends statuses when told to.
+     */
+    private static final class FakeReceiver {
+        final RemoteMediaClient client = mock(RemoteMediaClient.class);
+
+        private final List<RemoteMediaClient.Callback> registered = new ArrayList<>();
+        private int maxRegistered = 0;
+        private MediaInfo mediaInfo;
+        private long mediaSessionId = 0;
+        private MediaStatus mediaStatus;
+
+        FakeReceiver() {
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(InvocationOnMock invocation) {
+                    registered.add(invocation.<RemoteMediaClient.Callback>getArgument(0));
+                    maxRegistered = Math.max(maxRegistered, registered.size());
+                    return null;
+                }
+            }).when(client).registerCallback(any(RemoteMediaClient.Callback.class));
+
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(InvocationOnMock invocation) {
+                    registered.remove(invocation.<RemoteMediaClient.Callback>getArgument(0));
+                    return null;
+                }
+            }).when(client).unregisterCallback(any(RemoteMediaClient.Callback.class));
+
+            when(client.load(any(MediaInfo.class), any(MediaLoadOptions.class))).thenAnswer(new Answer<Object>() {
+                @Override
+                public Object answer(InvocationOnMock invocation) {
+                    mediaInfo = invocation.getArgument(0);
+                    mediaSessionId++;
+                    // The result isn't needed, the statuses tell when the media plays
+                    return null;
+                }
+            });
+
+            when(client.getMediaStatus()).thenAnswer(new Answer<MediaStatus>() {
+                @Override
+                public MediaStatus answer(InvocationOnMock invocation) {
+                    return mediaStatus;
+                }
+            });
+        }
+
+        void setPlayerState(int playerState) {
+            MediaStatus status = mock(MediaStatus.class);
+            when(status.getMediaInfo()).thenReturn(mediaInfo);
+            when(status.getMediaSessionId()).thenReturn(mediaSessionId);
+            when(status.getPlayerState()).thenReturn(playerState);
+            when(status.getIdleReason()).thenReturn(MediaStatus.IDLE_REASON_NONE);
+            when(status.getPlaybackRate()).thenReturn(1.0);
+            mediaStatus = status;
+        }
+
+        List<RemoteMediaClient.Callback> getRegistered() {
+            return new ArrayList<>(registered);
+        }
+
+        int getRegisteredCount() {
+            return registered.size();
+        }
+    }
+}
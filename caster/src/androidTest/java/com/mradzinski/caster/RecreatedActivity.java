@@ -0,0 +1,17 @@
+package com.mradzinski.caster;
+
+import android.app.Activity;
+import android.os.Bundle;
+
+/**
+ * Bare Activity which creates a Caster object the way apps do, in onCreate().
+ */
+public class RecreatedActivity extends Activity {
+    Caster caster;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        caster = Caster.create(this);
+    }
+}
@@ -0,0 +1,32 @@
+package com.mradzinski.caster;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * {@link Clock} and {@link Scheduler} of the core classes on Android. Time is
+ * {@link SystemClock#elapsedRealtime()} and tasks run on the main thread.
+ */
+final class AndroidPlatform implements Clock, Scheduler {
+    static final AndroidPlatform INSTANCE = new AndroidPlatform();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private AndroidPlatform() { /* no-op */ }
+
+    @Override
+    public long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        mainHandler.postDelayed(task, delayMs);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        mainHandler.removeCallbacks(task);
+    }
+}
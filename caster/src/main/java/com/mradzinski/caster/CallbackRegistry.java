@@ -0,0 +1,95 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registers {@link RemoteMediaClient.Callback}s on the current client and keeps track of them, so
+ * they're all unregistered when the client changes and never pile up: once {@link #MAX_CALLBACKS}
+ * are registered, new ones are refused until some are unregistered. The registered ones are never
+ * dropped, they may be waiting for an event their owner relies on.
+ *
+ * <p>Must be used on the main thread.</p>
+ */
+final class CallbackRegistry {
+    private static final String TAG = "Caster";
+    static final int MAX_CALLBACKS = 8;
+
+    private static final AtomicInteger liveRegistrations = new AtomicInteger();
+
+    private final ArrayDeque<RemoteMediaClient.Callback> callbacks = new ArrayDeque<>();
+    private RemoteMediaClient client;
+
+    /**
+     * Unregisters every callback from the previous client and uses the given one from now on. The
+     * callbacks implementing {@link OnDroppedListener} are told so.
+     */
+    void setClient(@Nullable RemoteMediaClient client) {
+        if (this.client == client) return;
+
+        RemoteMediaClient.Callback[] dropped = callbacks.toArray(new RemoteMediaClient.Callback[callbacks.size()]);
+        unregisterAll();
+        this.client = client;
+
+        for (RemoteMediaClient.Callback callback : dropped) {
+            if (callback instanceof OnDroppedListener) ((OnDroppedListener) callback).onDropped();
+        }
+    }
+
+    /**
+     * @return true if the callback is registered on the current client, false if there's no client
+     * or if {@link #MAX_CALLBACKS} are already registered
+     */
+    boolean register(@NonNull RemoteMediaClient.Callback callback) {
+        if (client == null) return false;
+        if (callbacks.contains(callback)) return true;
+
+        if (callbacks.size() == MAX_CALLBACKS) {
+            Log.w(TAG, "Too many callbacks registered on the RemoteMediaClient, refusing a new one.");
+            return false;
+        }
+
+        client.registerCallback(callback);
+        callbacks.addLast(callback);
+        liveRegistrations.incrementAndGet();
+
+        return true;
+    }
+
+    void unregister(@NonNull RemoteMediaClient.Callback callback) {
+        if (!callbacks.remove(callback)) return;
+
+        client.unregisterCallback(callback);
+        liveRegistrations.decrementAndGet();
+    }
+
+    void unregisterAll() {
+        while (!callbacks.isEmpty()) {
+            unregister(callbacks.peekFirst());
+        }
+    }
+
+    int size() {
+        return callbacks.size();
+    }
+
+    /**
+     * @return the number of callbacks currently registered through every registry of the process
+     */
+    static int getLiveRegistrationCount() {
+        return liveRegistrations.get();
+    }
+
+    /**
+     * Implemented by callbacks waiting for an event which won't come once the client changed.
+     */
+    interface OnDroppedListener {
+        void onDropped();
+    }
+}
@@ -16,9 +16,30 @@ import java.util.List;
 // Class is used and being referenced in the AndroidManifest.xml as value for
 // com.google.android.gms.cast.framework.OPTIONS_PROVIDER_CLASS_NAME
 public class CastOptionsProvider implements OptionsProvider {
+    private static volatile CastOptions preparedOptions;
 
     @Override
     public CastOptions getCastOptions(Context context) {
+        CastOptions options = preparedOptions;
+        return options != null ? options : buildCastOptions();
+    }
+
+    /**
+     * Builds the CastOptions ahead of time, so the CastContext initialization doesn't have to.
+     * Safe to call from any thread.
+     */
+    static void prepare() {
+        preparedOptions = buildCastOptions();
+    }
+
+    /**
+     * Drops the prepared CastOptions, e.g. after the configuration has changed.
+     */
+    static void invalidate() {
+        preparedOptions = null;
+    }
+
+    private static CastOptions buildCastOptions() {
         CastOptions customCastOptions = Caster.customCastOptions;
         LaunchOptions customLaunchOptions = Caster.customLaunchOptions;
 
@@ -48,7 +69,7 @@ public class CastOptionsProvider implements OptionsProvider {
         }
     }
 
-    private List<String> createButtonActions() {
+    private static List<String> createButtonActions() {
         return Arrays.asList(MediaIntentReceiver.ACTION_REWIND,
                 MediaIntentReceiver.ACTION_TOGGLE_PLAYBACK,
                 MediaIntentReceiver.ACTION_FORWARD,
@@ -0,0 +1,618 @@
+package com.mradzinski.caster;
+
+import android.app.Activity;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.arch.lifecycle.ProcessLifecycleOwner;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.media.MediaRouter;
+import android.util.Log;
+
+import com.google.android.gms.cast.CastDevice;
+import com.google.android.gms.cast.CastStatusCodes;
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.CastContext;
+import com.google.android.gms.cast.framework.CastSession;
+import com.google.android.gms.cast.framework.CastStateListener;
+import com.google.android.gms.cast.framework.SessionManagerListener;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Random;
+
+/**
+ * Process-wide part of Caster. It owns the {@link CastSession}, the {@link CasterPlayer} and every
+ * listener, and is shared by all the {@link Caster} objects, which only handle the UI of their
+ * Activity. It registers a single session listener, cast state listener and set of Activity
+ * lifecycle callbacks, however many Activities use Caster.
+ */
+final class CastSessionController implements CasterPlayer.OnMediaLoadedListener {
+    private static final String TAG = "Caster";
+    private static final String RESUME_POSITIONS_FILE = "caster-resume-positions";
+
+    private static CastSessionController instance;
+
+    private final CasterMetrics metrics = new CasterMetrics(AndroidPlatform.INSTANCE);
+    private final StatusDispatcher statusDispatcher = new StatusDispatcher(AndroidPlatform.INSTANCE, metrics);
+    private final CasterPlayer casterPlayer;
+
+    private final ListenerSet<Caster.OnConnectChangeListener> onConnectChangeListeners = new ListenerSet<>();
+    private final ListenerSet<Caster.OnCastSessionUpdatedListener> onCastSessionUpdatedListeners = new ListenerSet<>();
+    private final ListenerSet<Caster.OnCastSessionStateChanged> onCastSessionStateChangedListeners = new ListenerSet<>();
+    private final ListenerSet<Caster.OnCastQueueStatusListener> onCastQueueStatusListeners = new ListenerSet<>();
+    private final ListenerSet<CastStateListener> castStateListeners = new ListenerSet<>();
+    private final ListenerSet<Caster> attachments = new ListenerSet<>();
+    private final CallbackRegistry sessionCallbacks = new CallbackRegistry();
+    private final FrameProgressDispatcher frameProgressDispatcher = new FrameProgressDispatcher(AndroidPlatform.INSTANCE);
+    private final ConnectionMonitor connectionMonitor = new ConnectionMonitor(AndroidPlatform.INSTANCE,
+            AndroidPlatform.INSTANCE, new ConnectionMonitor.Reconnector() {
+                @Override
+                public boolean reconnect() {
+                    return reconnectToLastDevice();
+                }
+            }, new Random());
+
+    private Application application;
+    private String lastDeviceId;
+    private ResumeStore resumeStore;
+
+    private CastContext castContext;
+    private CastSession castSession;
+    private WeakReference<Activity> resumedActivity = new WeakReference<>(null);
+    private Long progressListenerInterval = 1000L;
+    private long registeredProgressInterval;
+    private boolean progressListenerRegistered = false;
+    private boolean adaptiveProgressUpdates = true;
+    // Whether any Activity of the app is started, whenever this controller was created
+    private boolean visible = false;
+
+    private final RemoteMediaClient.ProgressListener progressListener = new RemoteMediaClient.ProgressListener() {
+        @Override
+        public void onProgressUpdated(long progressMs, long durationMs) {
+            frameProgressDispatcher.onProgressUpdated(progressMs, durationMs);
+            statusDispatcher.onProgressUpdated(progressMs, durationMs);
+            recordResumePosition(casterPlayer.getStatus(), progressMs);
+        }
+    };
+
+    private final CastStateListener castStateListener = new CastStateListener() {
+        @Override
+        public void onCastStateChanged(int state) {
+            for (Object listener : castStateListeners.getListeners()) {
+                ((CastStateListener) listener).onCastStateChanged(state);
+            }
+        }
+    };
+
+    private final RemoteMediaClient.Callback mediaListener = new RemoteMediaClient.Callback() {
+        @Override
+        public void onStatusUpdated() {
+            onStatusChanged(statusDispatcher.updateStatus());
+            casterPlayer.onQueueStatusUpdated();
+        }
+
+        @Override
+        public void onQueueStatusUpdated() {
+            casterPlayer.onQueueStatusUpdated();
+
+            Object[] listeners = onCastQueueStatusListeners.getListeners();
+            if (listeners.length == 0) return;
+
+            MediaStatus mediaStatus = null;
+
+            try {
+                RemoteMediaClient client = castSession.getRemoteMediaClient();
+                if (client != null) mediaStatus = client.getMediaStatus();
+            } catch (Exception ignored) {}
+
+            if (mediaStatus != null) {
+                Integer currentIndex = mediaStatus.getIndexById(mediaStatus.getCurrentItemId());
+                int currentItemIndex = currentIndex != null ? currentIndex : -1;
+                int itemCount = mediaStatus.getQueueItemCount();
+
+                for (Object listener : listeners) {
+                    ((Caster.OnCastQueueStatusListener) listener).onQueueStatusUpdated(currentItemIndex, itemCount);
+                }
+            }
+        }
+
+        @Override
+        public void onPreloadStatusUpdated() {
+            Object[] listeners = onCastQueueStatusListeners.getListeners();
+            if (listeners.length == 0) return;
+
+            String preloadedMediaUrl = null;
+
+            try {
+                MediaQueueItem preloadedItem = castSession.getRemoteMediaClient().getPreloadedItem();
+                if (preloadedItem != null) preloadedMediaUrl = preloadedItem.getMedia().getContentId();
+            } catch (Exception ignored) {}
+
+            for (Object listener : listeners) {
+                ((Caster.OnCastQueueStatusListener) listener).onPreloadStatusUpdated(preloadedMediaUrl);
+            }
+        }
+
+        @Override public void onMetadataUpdated() {}
+        @Override public void onSendingRemoteMediaRequest() {}
+        @Override public void onAdBreakStatusUpdated() {}
+    };
+
+    private final SessionManagerListener<CastSession> sessionManagerListener = new SessionManagerListener<CastSession>() {
+        @Override
+        public void onSessionStarted(CastSession castSession, String s) {
+            invalidateOptionsMenu();
+            onConnected(castSession);
+        }
+
+        @Override
+        public void onSessionEnded(CastSession castSession, int i) {
+            // Ended on purpose, there's nothing to reconnect to
+            if (i == CastStatusCodes.SUCCESS) connectionMonitor.onDisconnected();
+
+            invalidateOptionsMenu();
+            onDisconnected();
+        }
+
+        @Override
+        public void onSessionResumed(CastSession castSession, boolean b) {
+            invalidateOptionsMenu();
+            onConnected(castSession);
+        }
+
+        @Override
+        public void onSessionStarting(CastSession castSession) {
+            //no-op
+        }
+
+        @Override
+        public void onSessionStartFailed(CastSession castSession, int i) {
+            // While reconnecting, the connection monitor makes the next attempt after its backoff
+            Log.w(TAG, "Cast session failed to start: " + CastStatusCodes.getStatusCodeString(i));
+        }
+
+        @Override
+        public void onSessionEnding(CastSession castSession) {
+            // The last moment the receiver's position can be read
+            saveResumePosition();
+        }
+
+        @Override
+        public void onSessionResuming(CastSession castSession, String s) {
+            //no-op
+        }
+
+        @Override
+        public void onSessionResumeFailed(CastSession castSession, int i) {
+            // While reconnecting, the connection monitor makes the next attempt after its backoff
+            Log.w(TAG, "Cast session failed to resume: " + CastStatusCodes.getStatusCodeString(i));
+        }
+
+        @Override
+        public void onSessionSuspended(CastSession castSession, int i) {
+            casterPlayer.setSuspended(true);
+            connectionMonitor.onSuspended();
+        }
+    };
+
+    /**
+     * @return the instance shared by the whole process, created on the first call
+     */
+    @MainThread
+    static CastSessionController get(@NonNull Context context) {
+        if (instance == null) {
+            instance = new CastSessionController((Application) context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    private CastSessionController(Application application) {
+        this();
+        this.application = application;
+        connectionMonitor.setHeartbeatEnabled(false);
+
+        resumeStore = new ResumeStore(new File(application.getFilesDir(), RESUME_POSITIONS_FILE),
+                AndroidPlatform.INSTANCE, CasterExecutors.newSerialExecutor("Caster-resume-positions"));
+        casterPlayer.setResumeStore(resumeStore);
+
+        application.registerActivityLifecycleCallbacks(createActivityCallbacks());
+        // Told right away if an Activity was started before this controller was created
+        ProcessLifecycleOwner.get().getLifecycle().addObserver(new VisibilityObserver());
+
+        CasterWarmUp.whenReady(application, new CasterWarmUp.Callback() {
+            @Override
+            public void onReady(@NonNull CastContext castContext) {
+                attach(castContext);
+            }
+        });
+    }
+
+    //Needed for NoOp instance, it's never attached to the Cast framework
+    CastSessionController() {
+        casterPlayer = new CasterPlayer(this, metrics, statusDispatcher);
+        // Only kept in memory until there's an application to store them in
+        resumeStore = new ResumeStore(null, AndroidPlatform.INSTANCE, CasterExecutors.direct());
+        casterPlayer.setResumeStore(resumeStore);
+
+        connectionMonitor.addListener(new ConnectionMonitor.Listener() {
+            @Override
+            public void onConnectionQualityChanged(int quality, long roundTripTimeMs) {
+                // Reconnecting was given up or the session was ended on purpose
+                if (quality == ConnectionMonitor.QUALITY_DISCONNECTED) {
+                    casterPlayer.setSuspended(false);
+                    casterPlayer.discardBufferedCommands();
+                }
+            }
+        });
+    }
+
+    private void attach(CastContext castContext) {
+        this.castContext = castContext;
+
+        castContext.addCastStateListener(castStateListener);
+        castContext.getSessionManager().addSessionManagerListener(sessionManagerListener, CastSession.class);
+
+        handleCurrentCastSession();
+    }
+
+    /**
+     * @return the number of Caster objects currently attached to an Activity
+     */
+    static int getAttachmentCount() {
+        return instance != null ? instance.attachments.size() : 0;
+    }
+
+    boolean isAttached() {
+        return castContext != null;
+    }
+
+    /**
+     * Registers a Caster object tied to an Activity, so it's detached once the Activity is destroyed.
+     */
+    void addAttachment(@NonNull Caster caster, @NonNull CastStateListener castStateListener) {
+        attachments.add(caster);
+        castStateListeners.add(castStateListener);
+    }
+
+    void removeAttachment(@NonNull Caster caster, @NonNull CastStateListener castStateListener) {
+        attachments.remove(caster);
+        castStateListeners.remove(castStateListener);
+    }
+
+    CasterPlayer getPlayer() {
+        return casterPlayer;
+    }
+
+    CasterMetrics getMetrics() {
+        return metrics;
+    }
+
+    StatusDispatcher getStatusDispatcher() {
+        return statusDispatcher;
+    }
+
+    @Nullable
+    CastSession getCastSession() {
+        return castSession;
+    }
+
+    ConnectionMonitor getConnectionMonitor() {
+        return connectionMonitor;
+    }
+
+    FrameProgressDispatcher getFrameProgressDispatcher() {
+        return frameProgressDispatcher;
+    }
+
+    ListenerSet<Caster.OnConnectChangeListener> getOnConnectChangeListeners() {
+        return onConnectChangeListeners;
+    }
+
+    ListenerSet<Caster.OnCastSessionUpdatedListener> getOnCastSessionUpdatedListeners() {
+        return onCastSessionUpdatedListeners;
+    }
+
+    ListenerSet<Caster.OnCastSessionStateChanged> getOnCastSessionStateChangedListeners() {
+        return onCastSessionStateChangedListeners;
+    }
+
+    ListenerSet<Caster.OnCastQueueStatusListener> getOnCastQueueStatusListeners() {
+        return onCastQueueStatusListeners;
+    }
+
+    /**
+     * Changes the interval of the progress updates, which applies to every progress listener.
+     */
+    void setProgressListenerInterval(Long interval) {
+        if (interval.equals(progressListenerInterval)) return;
+
+        progressListenerInterval = interval;
+        unregisterProgressListener();
+        updateProgressListenerRegistration();
+    }
+
+    void updateProgressListenerRegistration() {
+        if (castSession == null) return;
+
+        RemoteMediaClient client = castSession.getRemoteMediaClient();
+        if (client == null) return;
+
+        boolean regularNeeded = !statusDispatcher.getProgressListeners().isEmpty();
+        boolean frameNeeded = !frameProgressDispatcher.getListeners().isEmpty();
+
+        // Frame listeners are interpolated, they only need the real progress to resync now and then
+        long interval = regularNeeded ? progressListenerInterval : Long.MAX_VALUE;
+        if (frameNeeded) interval = Math.min(interval, FrameProgressDispatcher.RESYNC_INTERVAL_MS);
+
+        boolean needed = regularNeeded || frameNeeded;
+
+        if (needed && adaptiveProgressUpdates) {
+            interval = ProgressSchedule.getInterval(interval, statusDispatcher.getStatus(), visible);
+            needed = interval != ProgressSchedule.SUSPENDED;
+        }
+
+        if (progressListenerRegistered && (!needed || interval != registeredProgressInterval)) {
+            unregisterProgressListener();
+        }
+
+        if (needed && !progressListenerRegistered) {
+            client.addProgressListener(progressListener, interval);
+            registeredProgressInterval = interval;
+            progressListenerRegistered = true;
+
+            // The first tick would only come after a whole interval
+            progressListener.onProgressUpdated(client.getApproximateStreamPosition(), client.getStreamDuration());
+        }
+    }
+
+    /**
+     * Enables or disables the suspension of the progress updates while the app isn't visible or the
+     * media isn't playing and the longer interval for long content.
+     */
+    void setAdaptiveProgressUpdates(boolean enabled) {
+        adaptiveProgressUpdates = enabled;
+        updateProgressListenerRegistration();
+    }
+
+    private void unregisterProgressListener() {
+        if (!progressListenerRegistered) return;
+
+        try {
+            castSession.getRemoteMediaClient().removeProgressListener(progressListener);
+        } catch (Exception ignored) {}
+
+        progressListenerRegistered = false;
+    }
+
+    /**
+     * Selects the route of the last connected device again, the Cast framework then starts a new
+     * session on it.
+     */
+    private boolean reconnectToLastDevice() {
+        if (application == null || lastDeviceId == null) return false;
+
+        MediaRouter mediaRouter = MediaRouter.getInstance(application);
+
+        for (MediaRouter.RouteInfo route : mediaRouter.getRoutes()) {
+            CastDevice castDevice = CastDevice.getFromBundle(route.getExtras());
+
+            if (castDevice != null && lastDeviceId.equals(castDevice.getDeviceId())) {
+                mediaRouter.selectRoute(route);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void handleCurrentCastSession() {
+        CastSession newCastSession = castContext.getSessionManager().getCurrentCastSession();
+        if (castSession == null) {
+            if (newCastSession != null) {
+                onConnected(newCastSession);
+            }
+        } else {
+            if (newCastSession == null) {
+                onDisconnected();
+            } else if (newCastSession != castSession) {
+                onConnected(newCastSession);
+            }
+        }
+    }
+
+    private void onConnected(CastSession castSession) {
+        unregisterProgressListener();
+        this.castSession = castSession;
+
+        casterPlayer.setRemoteMediaClient(castSession.getRemoteMediaClient());
+        casterPlayer.setSuspended(false);
+
+        for (Object listener : onConnectChangeListeners.getListeners()) {
+            ((Caster.OnConnectChangeListener) listener).onConnected();
+        }
+
+        for (Object listener : onCastSessionUpdatedListeners.getListeners()) {
+            ((Caster.OnCastSessionUpdatedListener) listener).onCastSessionUpdated(castSession, true);
+        }
+
+        updateProgressListenerRegistration();
+        // Always registered first, it keeps the player's status snapshot up to date
+        sessionCallbacks.setClient(castSession.getRemoteMediaClient());
+        sessionCallbacks.register(mediaListener);
+
+        CastDevice castDevice = castSession.getCastDevice();
+        if (castDevice != null) lastDeviceId = castDevice.getDeviceId();
+
+        connectionMonitor.onConnected(new RemoteMediaClientAdapter(castSession.getRemoteMediaClient()));
+    }
+
+    private void onDisconnected() {
+        // Keeps trying if the session was lost while suspended
+        if (!connectionMonitor.isReconnecting()) connectionMonitor.onDisconnected();
+
+        if (castSession == null) return;
+
+        unregisterProgressListener();
+
+        sessionCallbacks.setClient(null);
+
+        casterPlayer.setRemoteMediaClient(null);
+        onStatusChanged(casterPlayer.getStatus());
+
+        for (Object listener : onConnectChangeListeners.getListeners()) {
+            ((Caster.OnConnectChangeListener) listener).onDisconnected();
+        }
+
+        for (Object listener : onCastSessionUpdatedListeners.getListeners()) {
+            ((Caster.OnCastSessionUpdatedListener) listener).onCastSessionUpdated(castSession, false);
+        }
+
+        this.castSession = null;
+    }
+
+    private void onStatusChanged(CasterStatus status) {
+        frameProgressDispatcher.onStatusUpdated(status);
+        updateProgressListenerRegistration();
+        casterPlayer.replayBufferedCommands();
+        recordResumePosition(status, status.getPosition());
+
+        if (!statusDispatcher.dispatch(status)) return;
+
+        PlaybackStateMachine playbackStateMachine = statusDispatcher.getStateMachine();
+        int state = playbackStateMachine.getState();
+
+        // OnCastSessionStateChanged doesn't know about buffering, so a playback which was interrupted
+        // by buffering and resumed isn't reported again
+        if (state == PlaybackStateMachine.STATE_BUFFERING) return;
+        if (state == playbackStateMachine.getPreviousSettledState()) return;
+
+        for (Object listener : onCastSessionStateChangedListeners.getListeners()) {
+            Caster.OnCastSessionStateChanged stateListener = (Caster.OnCastSessionStateChanged) listener;
+
+            switch (state) {
+                case PlaybackStateMachine.STATE_FINISHED: stateListener.onCastSessionFinished(); break;
+                case PlaybackStateMachine.STATE_PLAYING: stateListener.onCastSessionPlaying(); break;
+                case PlaybackStateMachine.STATE_PAUSED: stateListener.onCastSessionPaused(); break;
+            }
+        }
+    }
+
+    @Override
+    public void onMediaLoaded() {
+        for (Object listener : onCastSessionStateChangedListeners.getListeners()) {
+            ((Caster.OnCastSessionStateChanged) listener).onCastSessionBegan();
+        }
+        startExpandedControlsActivity();
+    }
+
+    private void startExpandedControlsActivity() {
+        Activity theActivity = resumedActivity.get();
+        if (theActivity == null) return;
+
+        Intent intent = new Intent(theActivity, ExpandedControlsActivity.class);
+        theActivity.startActivity(intent);
+    }
+
+    private void invalidateOptionsMenu() {
+        Activity theActivity = resumedActivity.get();
+        if (theActivity != null) theActivity.invalidateOptionsMenu();
+    }
+
+    private void onVisibilityChanged() {
+        updateProgressListenerRegistration();
+        connectionMonitor.setHeartbeatEnabled(visible);
+
+        // The process may be killed at any time once in the background
+        if (!visible) saveResumePosition();
+    }
+
+    private void recordResumePosition(CasterStatus status, long position) {
+        String contentId = status.getContentId();
+        if (contentId == null) return;
+
+        if (status.isFinished()) {
+            resumeStore.remove(contentId);
+        } else if (status.isPlaying() || status.isPaused()) {
+            resumeStore.record(contentId, position, status.getDuration());
+        }
+    }
+
+    /**
+     * Records the position the receiver is at right now and writes the pending positions.
+     */
+    private void saveResumePosition() {
+        RemoteMediaClient client = castSession != null ? castSession.getRemoteMediaClient() : null;
+        if (client != null) recordResumePosition(casterPlayer.getStatus(), client.getApproximateStreamPosition());
+
+        resumeStore.flush();
+    }
+
+    private Application.ActivityLifecycleCallbacks createActivityCallbacks() {
+        return new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+                //no-op
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+                //no-op
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+                resumedActivity = new WeakReference<>(activity);
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+                if (resumedActivity.get() == activity) resumedActivity.clear();
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+                //no-op
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+                //no-op
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+                for (Object caster : attachments.getListeners()) {
+                    ((Caster) caster).onActivityDestroyed(activity);
+                }
+            }
+        };
+    }
+
+    /**
+     * Follows the visibility of the whole app rather than counting Activities, so it's right even
+     * if Activities were started before this controller was created, e.g. from a Service.
+     */
+    private final class VisibilityObserver implements LifecycleObserver {
+        @OnLifecycleEvent(Lifecycle.Event.ON_START)
+        public void onStart() {
+            visible = true;
+            onVisibilityChanged();
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+        public void onStop() {
+            visible = false;
+            onVisibilityChanged();
+        }
+    }
+}
@@ -2,9 +2,10 @@ package com.mradzinski.caster;
 
 import android.app.Activity;
 import android.app.Application;
-import android.content.Intent;
-import android.os.Bundle;
+import android.arch.lifecycle.LifecycleOwner;
+import android.content.Context;
 import android.support.annotation.LayoutRes;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.UiThread;
@@ -18,27 +19,26 @@ import android.widget.LinearLayout;
 
 import com.google.android.gms.cast.CastMediaControlIntent;
 import com.google.android.gms.cast.LaunchOptions;
-import com.google.android.gms.cast.MediaStatus;
 import com.google.android.gms.cast.framework.CastButtonFactory;
-import com.google.android.gms.cast.framework.CastContext;
 import com.google.android.gms.cast.framework.CastOptions;
 import com.google.android.gms.cast.framework.CastSession;
 import com.google.android.gms.cast.framework.CastState;
 import com.google.android.gms.cast.framework.CastStateListener;
 import com.google.android.gms.cast.framework.IntroductoryOverlay;
-import com.google.android.gms.cast.framework.SessionManagerListener;
-import com.google.android.gms.cast.framework.media.RemoteMediaClient;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.GoogleApiAvailability;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Core class of Caster. It manages buttons/widgets and gives access to the media player.
+ *
+ * <p>The session, the player and the listeners are shared by every Caster object of the process,
+ * each Caster object only handles the UI of its own Activity.</p>
  */
-public class Caster implements CasterPlayer.OnMediaLoadedListener {
+public class Caster {
     private final static String TAG = "Caster";
 
     static String receiverId = CastMediaControlIntent.DEFAULT_MEDIA_RECEIVER_APPLICATION_ID;
@@ -47,82 +47,52 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
     protected static LaunchOptions customLaunchOptions;
     protected static ExpandedControlsStyle expandedControlsStyle;
 
-    private SessionManagerListener<CastSession> sessionManagerListener;
+    private final CastSessionController controller;
+    private final CasterMetrics metrics;
+    private final StatusDispatcher statusDispatcher;
+
+    private final ListenerSet<OnConnectChangeListener> onConnectChangeListeners;
+    private final ListenerSet<OnCastSessionUpdatedListener> onCastSessionUpdatedListeners;
+    private final ListenerSet<OnCastSessionStateChanged> onCastSessionStateChangedListeners;
+    private final ListenerSet<MediaClient.ProgressListener> onCastSessionProgressUpdateListeners;
+    private final ListenerSet<OnCastQueueStatusListener> onCastQueueStatusListeners;
+    private final ListenerSet<PlaybackStateMachine.Listener> onPlaybackStateChangedListeners;
+
+    // Listeners given to the set* methods, each one replaces the previous one
     private OnConnectChangeListener onConnectChangeListener;
     private OnCastSessionUpdatedListener onCastSessionUpdatedListener;
     private OnCastSessionStateChanged onCastSessionStateChanged;
     private OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener;
+    private OnCastQueueStatusListener onCastQueueStatusListener;
 
-    private CastSession castSession;
-    private CasterPlayer casterPlayer;
-    private WeakReference<Activity> activity;
-    private List<IntroductoryOverlay> introductionOverlays = new ArrayList<>();
-    private Long progressListenerInterval = 1000L;
+    private final WeakReference<Activity> activity;
+    // Listeners given to the add* methods of a Caster object tied to an Activity, removed with it
+    private final boolean tiedToActivity;
+    private final List<AddedListener<?>> addedListeners = new ArrayList<>();
+    private final List<IntroductoryOverlay> introductionOverlays = new ArrayList<>();
 
-    private boolean deliveredFinishStatus = false;
-    private boolean deliveredPlayingVideo = false;
-    private boolean deliveredPausedVideo = false;
+    private final Runnable updateProgressListenerRegistration = new Runnable() {
+        @Override
+        public void run() {
+            controller.updateProgressListenerRegistration();
+        }
+    };
 
-    private RemoteMediaClient.ProgressListener progressListener = new RemoteMediaClient.ProgressListener() {
+    private final Runnable onFrameProgressListenersChanged = new Runnable() {
         @Override
-        public void onProgressUpdated(long progressMs, long durationMs) {
-            if (onCastSessionProgressUpdateListener != null) {
-                onCastSessionProgressUpdateListener.onProgressUpdated(progressMs, durationMs);
-            }
+        public void run() {
+            controller.getFrameProgressDispatcher().onListenersChanged();
+            controller.updateProgressListenerRegistration();
         }
     };
 
-    private RemoteMediaClient.Callback mediaListener = new RemoteMediaClient.Callback() {
+    private final CastStateListener castStateListener = new CastStateListener() {
         @Override
-        public void onStatusUpdated() {
-            RemoteMediaClient client = null;
-            MediaStatus mediaStatus = null;
-
-            try {
-                client = castSession.getRemoteMediaClient();
-                if (client != null) mediaStatus = client.getMediaStatus();
-            } catch (Exception ignored) {}
-
-            if (client != null && mediaStatus != null) {
-                int playerState = mediaStatus.getPlayerState();
-                int clientIdleReason = client.getIdleReason();
-
-                if (playerState == MediaStatus.PLAYER_STATE_BUFFERING) return;
-
-                if (playerState == MediaStatus.PLAYER_STATE_IDLE && clientIdleReason == MediaStatus.IDLE_REASON_FINISHED) {
-                    if (onCastSessionStateChanged != null && !deliveredFinishStatus) {
-                        onCastSessionStateChanged.onCastSessionFinished();
-                        deliveredFinishStatus = true;
-                        deliveredPlayingVideo = false;
-                        deliveredPausedVideo = false;
-                    }
-                }
-
-                if (playerState == MediaStatus.PLAYER_STATE_PLAYING) {
-                    if (onCastSessionStateChanged != null && !deliveredPlayingVideo) {
-                        onCastSessionStateChanged.onCastSessionPlaying();
-                        deliveredFinishStatus = false;
-                        deliveredPlayingVideo = true;
-                        deliveredPausedVideo = false;
-                    }
-                }
-
-                if (playerState == MediaStatus.PLAYER_STATE_PAUSED) {
-                    if (onCastSessionStateChanged != null && !deliveredPausedVideo) {
-                        onCastSessionStateChanged.onCastSessionPaused();
-                        deliveredFinishStatus = false;
-                        deliveredPlayingVideo = false;
-                        deliveredPausedVideo = true;
-                    }
-                }
+        public void onCastStateChanged(int state) {
+            if (state != CastState.NO_DEVICES_AVAILABLE && introductionOverlays.size() > 0) {
+                showIntroductionOverlay();
             }
         }
-
-        @Override public void onMetadataUpdated() {}
-        @Override public void onQueueStatusUpdated() {}
-        @Override public void onPreloadStatusUpdated() {}
-        @Override public void onSendingRemoteMediaRequest() {}
-        @Override public void onAdBreakStatusUpdated() {}
     };
 
     /**
@@ -132,6 +102,7 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
      */
     public static void configure(@NonNull String receiverId) {
         Caster.receiverId = receiverId;
+        CastOptionsProvider.invalidate();
     }
 
     /**
@@ -141,6 +112,7 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
      */
     public static void configure(@NonNull CastOptions castOptions) {
         Caster.customCastOptions = castOptions;
+        CastOptionsProvider.invalidate();
     }
 
     /**
@@ -151,18 +123,54 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
      */
     public static void configure(@NonNull LaunchOptions launchOptions) {
         Caster.customLaunchOptions = launchOptions;
+        CastOptionsProvider.invalidate();
     }
 
     /**
-     * Creates the Caster object.
+     * Starts preparing the Cast framework in the background, so creating Caster later doesn't
+     * block the main thread. Should be used in {@link Application#onCreate()}, after any
+     * configure() call.
+     *
+     * @param context any context, only its application context is kept
+     */
+    @MainThread
+    public static void warmUp(@NonNull Context context) {
+        CasterWarmUp.start(context.getApplicationContext());
+    }
+
+    /**
+     * Creates the Caster object. If {@link #warmUp(Context)} is still running, it returns right
+     * away, without checking Google Play services on the main thread, and the Caster object
+     * attaches to the Cast framework once it's ready. It never attaches if the warm-up finds that
+     * Google Play services isn't available.
      *
      * @param activity {@link Activity} in which Caster object is created
      * @return the Caster object
      */
+    @MainThread
     public static Caster create(@NonNull Activity activity) {
-        int playServicesState = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(activity);
-        if (playServicesState == ConnectionResult.SUCCESS) {
-            return new Caster(activity);
+        if (CasterWarmUp.mayBePlayServicesAvailable(activity)) {
+            return new Caster(CastSessionController.get(activity), activity);
+        } else {
+            Log.w(Caster.TAG, "Google Play services not found on a device, Caster won't work.");
+            return new CasterNoOp();
+        }
+    }
+
+    /**
+     * Creates a Caster object which isn't tied to an Activity, e.g. in a Service. It shares the
+     * session, the player and the listeners with the other Caster objects, but its UI methods
+     * do nothing.
+     *
+     * @param context any context, only its application context is kept
+     * @return the Caster object
+     */
+    @MainThread
+    public static Caster create(@NonNull Context context) {
+        if (context instanceof Activity) return create((Activity) context);
+
+        if (CasterWarmUp.mayBePlayServicesAvailable(context)) {
+            return new Caster(CastSessionController.get(context), null);
         } else {
             Log.w(Caster.TAG, "Google Play services not found on a device, Caster won't work.");
             return new CasterNoOp();
@@ -170,16 +178,67 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
     }
 
     //Needed for NoOp instance
-    Caster() {/* no-op */ }
+    Caster() {
+        this(new CastSessionController(), null);
+    }
 
-    private Caster(@NonNull Activity activity) {
+    private Caster(@NonNull CastSessionController controller, @Nullable Activity activity) {
+        this.controller = controller;
         this.activity = new WeakReference<>(activity);
-        sessionManagerListener = createSessionManagerListener();
-        casterPlayer = new CasterPlayer(this);
+        this.tiedToActivity = activity != null;
+
+        metrics = controller.getMetrics();
+        statusDispatcher = controller.getStatusDispatcher();
+        onConnectChangeListeners = controller.getOnConnectChangeListeners();
+        onCastSessionUpdatedListeners = controller.getOnCastSessionUpdatedListeners();
+        onCastSessionStateChangedListeners = controller.getOnCastSessionStateChangedListeners();
+        onCastSessionProgressUpdateListeners = statusDispatcher.getProgressListeners();
+        onCastQueueStatusListeners = controller.getOnCastQueueStatusListeners();
+        onPlaybackStateChangedListeners = statusDispatcher.getPlaybackStateListeners();
+
+        if (activity != null) controller.addAttachment(this, castStateListener);
+    }
+
+    /**
+     * Called for every destroyed Activity. Once its own Activity is gone, this Caster object is
+     * detached and the listeners given to its set* methods are removed.
+     */
+    void onActivityDestroyed(@NonNull Activity destroyedActivity) {
+        Activity theActivity = activity.get();
+        if (theActivity != null && theActivity != destroyedActivity) return;
+
+        controller.removeAttachment(this, castStateListener);
+        introductionOverlays.clear();
+
+        setOnConnectChangeListener(null);
+        setOnCastSessionUpdatedListener(null);
+        setOnCastSessionStateChanged(null);
+        setOnCastSessionProgressUpdateListener(null);
+        setOnCastQueueStatusListener(null);
+
+        removeAddedListeners();
+    }
 
-        activity.getApplication().registerActivityLifecycleCallbacks(createActivityCallbacks());
+    /**
+     * Checks if Caster is attached to the Cast framework. It's always true unless
+     * {@link #warmUp(Context)} is still running.
+     *
+     * @return true if Caster is attached, false otherwise
+     */
+    public boolean isAttached() {
+        return controller.isAttached();
+    }
 
-        CastContext.getSharedInstance(activity).addCastStateListener(createCastStateListener());
+    /**
+     * Debug counter of the callbacks Caster currently has registered on the Cast framework's media
+     * clients and of the Caster objects attached to a live Activity. It should stay flat while
+     * Activities are recreated, a growing value points to a leak.
+     *
+     * @return the number of live registrations
+     */
+    @MainThread
+    public static int getLiveRegistrationCount() {
+        return CallbackRegistry.getLiveRegistrationCount() + CastSessionController.getAttachmentCount();
     }
 
     /**
@@ -188,7 +247,7 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
      * @return the instance of {@link CasterPlayer}
      */
     public CasterPlayer getPlayer() {
-        return casterPlayer;
+        return controller.getPlayer();
     }
 
     /**
@@ -197,7 +256,7 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
      * @return the instance of {@link CastSession} handled by Caster or null if Chromecast is disconnected.
      */
     @Nullable  public CastSession getCastSession() {
-        return castSession;
+        return controller.getCastSession();
     }
 
     /**
@@ -206,7 +265,7 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
      * @return true if a Google Cast is connected, false otherwise
      */
     public boolean isConnected() {
-        return castSession != null;
+        return controller.getCastSession() != null;
     }
 
     /**
@@ -309,36 +368,141 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
     }
 
     /**
-     * Sets {@link OnConnectChangeListener}
+     * Sets {@link OnConnectChangeListener}, replacing the one previously set with this method.
+     * Listeners added with {@link #addOnConnectChangeListener(OnConnectChangeListener)} are kept.
      *
      * @param onConnectChangeListener Connect change callback
      */
     public void setOnConnectChangeListener(@Nullable OnConnectChangeListener onConnectChangeListener) {
+        if (this.onConnectChangeListener != null) onConnectChangeListeners.remove(this.onConnectChangeListener);
+        if (onConnectChangeListener != null) onConnectChangeListeners.add(onConnectChangeListener);
+
         this.onConnectChangeListener = onConnectChangeListener;
     }
 
     /**
-     * Sets {@link OnCastSessionUpdatedListener}
+     * Adds an {@link OnConnectChangeListener}. It's called until it's removed with
+     * {@link #removeOnConnectChangeListener(OnConnectChangeListener)}, or
+     * until the Activity this Caster object was created in is destroyed.
+     *
+     * @param onConnectChangeListener Connect change callback
+     */
+    public void addOnConnectChangeListener(@NonNull OnConnectChangeListener onConnectChangeListener) {
+        addListener(onConnectChangeListeners, onConnectChangeListener, null);
+    }
+
+    /**
+     * Adds an {@link OnConnectChangeListener}, which is removed automatically once the owner is destroyed.
+     *
+     * @param owner The {@link LifecycleOwner} (e.g. Activity or Fragment) the listener belongs to
+     * @param onConnectChangeListener Connect change callback
+     */
+    public void addOnConnectChangeListener(@NonNull LifecycleOwner owner, @NonNull OnConnectChangeListener onConnectChangeListener) {
+        LifecycleSubscription.bind(owner, onConnectChangeListeners, onConnectChangeListener, null);
+    }
+
+    /**
+     * Adds an {@link OnConnectChangeListener} which is called through the given executor, e.g. one of
+     * {@link CasterExecutors}. Every event is delivered once and in order: events are queued while the
+     * listener is busy, so a slow listener never blocks the main thread and never misses one.
+     *
+     * @param onConnectChangeListener Connect change callback
+     * @param executor Executor on which the listener is called
+     */
+    public void addOnConnectChangeListener(@NonNull OnConnectChangeListener onConnectChangeListener, @NonNull Executor executor) {
+        if (executor == CasterExecutors.direct()) {
+            addListener(onConnectChangeListeners, onConnectChangeListener, null);
+        } else {
+            addListener(onConnectChangeListeners, new DeliveredListeners.ConnectChange(onConnectChangeListener, executor), null);
+        }
+    }
+
+    public void removeOnConnectChangeListener(@NonNull OnConnectChangeListener onConnectChangeListener) {
+        removeListener(onConnectChangeListeners, onConnectChangeListener);
+    }
+
+    /**
+     * Sets {@link OnCastSessionUpdatedListener}, replacing the one previously set with this method.
+     * Listeners added with {@link #addOnCastSessionUpdatedListener(OnCastSessionUpdatedListener)} are kept.
      *
      * @param onCastSessionUpdatedListener Cast session updated callback
      */
     public void setOnCastSessionUpdatedListener(@Nullable OnCastSessionUpdatedListener onCastSessionUpdatedListener) {
+        if (this.onCastSessionUpdatedListener != null) onCastSessionUpdatedListeners.remove(this.onCastSessionUpdatedListener);
+        if (onCastSessionUpdatedListener != null) onCastSessionUpdatedListeners.add(onCastSessionUpdatedListener);
+
         this.onCastSessionUpdatedListener = onCastSessionUpdatedListener;
     }
 
     /**
-     * Sets {@link OnCastSessionProgressUpdateListener} with a custom interval.
+     * Adds an {@link OnCastSessionUpdatedListener}. It's called until it's removed with
+     * {@link #removeOnCastSessionUpdatedListener(OnCastSessionUpdatedListener)}, or
+     * until the Activity this Caster object was created in is destroyed.
+     *
+     * @param onCastSessionUpdatedListener Cast session updated callback
+     */
+    public void addOnCastSessionUpdatedListener(@NonNull OnCastSessionUpdatedListener onCastSessionUpdatedListener) {
+        addListener(onCastSessionUpdatedListeners, onCastSessionUpdatedListener, null);
+    }
+
+    /**
+     * Adds an {@link OnCastSessionUpdatedListener}, which is removed automatically once the owner is destroyed.
+     *
+     * @param owner The {@link LifecycleOwner} (e.g. Activity or Fragment) the listener belongs to
+     * @param onCastSessionUpdatedListener Cast session updated callback
+     */
+    public void addOnCastSessionUpdatedListener(@NonNull LifecycleOwner owner, @NonNull OnCastSessionUpdatedListener onCastSessionUpdatedListener) {
+        LifecycleSubscription.bind(owner, onCastSessionUpdatedListeners, onCastSessionUpdatedListener, null);
+    }
+
+    /**
+     * Adds an {@link OnCastSessionUpdatedListener} which is called through the given executor, e.g. one of
+     * {@link CasterExecutors}. Every event is delivered once and in order: events are queued while the
+     * listener is busy, so a slow listener never blocks the main thread and never misses one.
+     *
+     * @param onCastSessionUpdatedListener Cast session updated callback
+     * @param executor Executor on which the listener is called
+     */
+    public void addOnCastSessionUpdatedListener(@NonNull OnCastSessionUpdatedListener onCastSessionUpdatedListener, @NonNull Executor executor) {
+        if (executor == CasterExecutors.direct()) {
+            addListener(onCastSessionUpdatedListeners, onCastSessionUpdatedListener, null);
+        } else {
+            addListener(onCastSessionUpdatedListeners, new DeliveredListeners.SessionUpdated(onCastSessionUpdatedListener, executor), null);
+        }
+    }
+
+    public void removeOnCastSessionUpdatedListener(@NonNull OnCastSessionUpdatedListener onCastSessionUpdatedListener) {
+        removeListener(onCastSessionUpdatedListeners, onCastSessionUpdatedListener);
+    }
+
+    /**
+     * Sets {@link OnCastSessionProgressUpdateListener} with a custom interval, replacing the one previously
+     * set with a set* method. The interval applies to every progress listener.
      *
      * @param interval The interval in ms for this listener to be called.
      * @param onCastSessionProgressUpdateListener An instance of {@link OnCastSessionProgressUpdateListener}
      */
     public void setOnCastSessionProgressUpdateListener(Long interval, @Nullable OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener) {
-        this.onCastSessionProgressUpdateListener = onCastSessionProgressUpdateListener;
-        this.progressListenerInterval = interval;
+        controller.setProgressListenerInterval(interval);
+        setOnCastSessionProgressUpdateListener(onCastSessionProgressUpdateListener);
+    }
+
+    /**
+     * Enables or disables the adaptive progress updates, which are enabled by default. While enabled,
+     * progress listeners aren't called while no Activity of the app is visible or the media isn't
+     * playing, and the interval is stretched for long content (up to 10 s for a 3 hour stream). They're
+     * called again right away once the app is visible and the media plays. Disable them if a listener
+     * needs every tick, e.g. in a Service.
+     *
+     * @param enabled true to enable the adaptive progress updates, false to use the interval as is
+     */
+    public void setAdaptiveProgressUpdates(boolean enabled) {
+        controller.setAdaptiveProgressUpdates(enabled);
     }
 
     /**
-     * Sets {@link OnCastSessionProgressUpdateListener} which will be called with a default interval of 1000 ms.
+     * Sets {@link OnCastSessionProgressUpdateListener} which will be called with a default interval of 1000 ms,
+     * replacing the one previously set with a set* method.
      * To customize the interval this listener is called please use:
      *
      * <p><code>setOnCastSessionProgressUpdateListener(interval, callback)</code></p>
@@ -346,185 +510,350 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
      * @param onCastSessionProgressUpdateListener An instance of {@link OnCastSessionProgressUpdateListener}
      */
     public void setOnCastSessionProgressUpdateListener(@Nullable OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener) {
+        if (this.onCastSessionProgressUpdateListener != null) onCastSessionProgressUpdateListeners.remove(this.onCastSessionProgressUpdateListener);
+        if (onCastSessionProgressUpdateListener != null) onCastSessionProgressUpdateListeners.add(onCastSessionProgressUpdateListener);
+
         this.onCastSessionProgressUpdateListener = onCastSessionProgressUpdateListener;
+        controller.updateProgressListenerRegistration();
     }
 
     /**
-     * Sets {@link OnCastSessionStateChanged}
+     * Adds an {@link OnCastSessionProgressUpdateListener}. It's called until it's removed with
+     * {@link #removeOnCastSessionProgressUpdateListener(OnCastSessionProgressUpdateListener)}, or
+     * until the Activity this Caster object was created in is destroyed.
      *
-     * @param onCastSessionStateChanged  An instance of {@link OnCastSessionStateChanged}
+     * @param onCastSessionProgressUpdateListener An instance of {@link OnCastSessionProgressUpdateListener}
      */
-    public void setOnCastSessionStateChanged(@Nullable OnCastSessionStateChanged onCastSessionStateChanged) {
-        this.onCastSessionStateChanged = onCastSessionStateChanged;
+    public void addOnCastSessionProgressUpdateListener(@NonNull OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener) {
+        addListener(onCastSessionProgressUpdateListeners, onCastSessionProgressUpdateListener, updateProgressListenerRegistration);
+        controller.updateProgressListenerRegistration();
     }
 
-    private void setUpMediaRouteMenuItem(Menu menu) {
-        Activity theActivity = activity.get();
-        if (theActivity == null) return;
+    /**
+     * Adds an {@link OnCastSessionProgressUpdateListener}, which is removed automatically once the owner is destroyed.
+     *
+     * @param owner The {@link LifecycleOwner} (e.g. Activity or Fragment) the listener belongs to
+     * @param onCastSessionProgressUpdateListener An instance of {@link OnCastSessionProgressUpdateListener}
+     */
+    public void addOnCastSessionProgressUpdateListener(@NonNull LifecycleOwner owner, @NonNull OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener) {
+        LifecycleSubscription.bind(owner, onCastSessionProgressUpdateListeners, onCastSessionProgressUpdateListener,
+                updateProgressListenerRegistration);
+        controller.updateProgressListenerRegistration();
+    }
 
-        CastButtonFactory.setUpMediaRouteButton(theActivity, menu, R.id.caster_media_route_menu_item);
+    /**
+     * Adds an {@link OnCastSessionProgressUpdateListener} which is called through the given executor, e.g. one of
+     * {@link CasterExecutors}. Progress updates are never queued: a slow listener never blocks the main
+     * thread, and an update which wasn't delivered yet is replaced by the latest one.
+     *
+     * @param onCastSessionProgressUpdateListener An instance of {@link OnCastSessionProgressUpdateListener}
+     * @param executor Executor on which the listener is called
+     */
+    public void addOnCastSessionProgressUpdateListener(@NonNull OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener, @NonNull Executor executor) {
+        if (executor == CasterExecutors.direct()) {
+            addListener(onCastSessionProgressUpdateListeners, onCastSessionProgressUpdateListener, updateProgressListenerRegistration);
+        } else {
+            addListener(onCastSessionProgressUpdateListeners,
+                    new DeliveredListeners.ProgressUpdate(onCastSessionProgressUpdateListener, executor), updateProgressListenerRegistration);
+        }
+
+        controller.updateProgressListenerRegistration();
     }
 
-    @NonNull
-    private CastStateListener createCastStateListener() {
-        return new CastStateListener() {
-            @Override
-            public void onCastStateChanged(int state) {
-                if (state != CastState.NO_DEVICES_AVAILABLE && introductionOverlays.size() > 0) {
-                    showIntroductionOverlay();
-                }
-            }
-        };
+    public void removeOnCastSessionProgressUpdateListener(@NonNull OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener) {
+        removeListener(onCastSessionProgressUpdateListeners, onCastSessionProgressUpdateListener);
+        controller.updateProgressListenerRegistration();
     }
 
-    private void showIntroductionOverlay() {
-        if (introductionOverlays.size() > 0) {
-            for (IntroductoryOverlay io : introductionOverlays) {
-                io.show();
-            }
+    /**
+     * Adds an {@link OnCastSessionProgressUpdateListener} which is called on every frame while the media
+     * plays, e.g. to move a seekbar smoothly. The position is extrapolated from the latest status and
+     * playback rate, so the receiver is only asked for the real progress every few seconds, unless
+     * a regular progress listener needs it more often.
+     *
+     * <p>It's called on the main thread, so it must be quick.</p>
+     *
+     * @param onCastSessionProgressUpdateListener An instance of {@link OnCastSessionProgressUpdateListener}
+     */
+    @MainThread
+    public void addOnCastSessionFrameProgressUpdateListener(@NonNull OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener) {
+        FrameProgressDispatcher frameProgressDispatcher = controller.getFrameProgressDispatcher();
+
+        if (addListener(frameProgressDispatcher.getListeners(), onCastSessionProgressUpdateListener, onFrameProgressListenersChanged)) {
+            frameProgressDispatcher.onListenersChanged();
+            controller.updateProgressListenerRegistration();
         }
     }
 
-    private SessionManagerListener<CastSession> createSessionManagerListener() {
-        final Activity theActivity = activity.get();
+    /**
+     * Adds an {@link OnCastSessionProgressUpdateListener} called on every frame, which is removed
+     * automatically once the owner is destroyed.
+     *
+     * @param owner The {@link LifecycleOwner} (e.g. Activity or Fragment) the listener belongs to
+     * @param onCastSessionProgressUpdateListener An instance of {@link OnCastSessionProgressUpdateListener}
+     * @see #addOnCastSessionFrameProgressUpdateListener(OnCastSessionProgressUpdateListener)
+     */
+    @MainThread
+    public void addOnCastSessionFrameProgressUpdateListener(@NonNull LifecycleOwner owner, @NonNull OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener) {
+        LifecycleSubscription.bind(owner, controller.getFrameProgressDispatcher().getListeners(),
+                onCastSessionProgressUpdateListener, onFrameProgressListenersChanged);
+        onFrameProgressListenersChanged.run();
+    }
 
-        return new SessionManagerListener<CastSession>() {
-            @Override
-            public void onSessionStarted(CastSession castSession, String s) {
-                if (theActivity == null) return;
+    @MainThread
+    public void removeOnCastSessionFrameProgressUpdateListener(@NonNull OnCastSessionProgressUpdateListener onCastSessionProgressUpdateListener) {
+        FrameProgressDispatcher frameProgressDispatcher = controller.getFrameProgressDispatcher();
 
-                theActivity.invalidateOptionsMenu();
-                onConnected(castSession);
-            }
+        if (removeListener(frameProgressDispatcher.getListeners(), onCastSessionProgressUpdateListener)) {
+            frameProgressDispatcher.onListenersChanged();
+            controller.updateProgressListenerRegistration();
+        }
+    }
 
-            @Override
-            public void onSessionEnded(CastSession castSession, int i) {
-                if (theActivity == null) return;
+    /**
+     * Sets {@link OnCastSessionStateChanged}, replacing the one previously set with this method.
+     * Listeners added with {@link #addOnCastSessionStateChanged(OnCastSessionStateChanged)} are kept.
+     *
+     * @param onCastSessionStateChanged  An instance of {@link OnCastSessionStateChanged}
+     */
+    public void setOnCastSessionStateChanged(@Nullable OnCastSessionStateChanged onCastSessionStateChanged) {
+        if (this.onCastSessionStateChanged != null) onCastSessionStateChangedListeners.remove(this.onCastSessionStateChanged);
+        if (onCastSessionStateChanged != null) onCastSessionStateChangedListeners.add(onCastSessionStateChanged);
 
-                theActivity.invalidateOptionsMenu();
-                onDisconnected();
-            }
+        this.onCastSessionStateChanged = onCastSessionStateChanged;
+    }
 
-            @Override
-            public void onSessionResumed(CastSession castSession, boolean b) {
-                if (theActivity == null) return;
+    /**
+     * Adds an {@link OnCastSessionStateChanged}. It's called until it's removed with
+     * {@link #removeOnCastSessionStateChanged(OnCastSessionStateChanged)}, or
+     * until the Activity this Caster object was created in is destroyed.
+     *
+     * @param onCastSessionStateChanged  An instance of {@link OnCastSessionStateChanged}
+     */
+    public void addOnCastSessionStateChanged(@NonNull OnCastSessionStateChanged onCastSessionStateChanged) {
+        addListener(onCastSessionStateChangedListeners, onCastSessionStateChanged, null);
+    }
 
-                theActivity.invalidateOptionsMenu();
-                onConnected(castSession);
-            }
+    /**
+     * Adds an {@link OnCastSessionStateChanged}, which is removed automatically once the owner is destroyed.
+     *
+     * @param owner The {@link LifecycleOwner} (e.g. Activity or Fragment) the listener belongs to
+     * @param onCastSessionStateChanged  An instance of {@link OnCastSessionStateChanged}
+     */
+    public void addOnCastSessionStateChanged(@NonNull LifecycleOwner owner, @NonNull OnCastSessionStateChanged onCastSessionStateChanged) {
+        LifecycleSubscription.bind(owner, onCastSessionStateChangedListeners, onCastSessionStateChanged, null);
+    }
 
-            @Override
-            public void onSessionStarting(CastSession castSession) {
-                //no-op
-            }
+    /**
+     * Adds an {@link OnCastSessionStateChanged} which is called through the given executor, e.g. one of
+     * {@link CasterExecutors}. Every event is delivered once and in order: events are queued while the
+     * listener is busy, so a slow listener never blocks the main thread and never misses one.
+     *
+     * @param onCastSessionStateChanged An instance of {@link OnCastSessionStateChanged}
+     * @param executor Executor on which the listener is called
+     */
+    public void addOnCastSessionStateChanged(@NonNull OnCastSessionStateChanged onCastSessionStateChanged, @NonNull Executor executor) {
+        if (executor == CasterExecutors.direct()) {
+            addListener(onCastSessionStateChangedListeners, onCastSessionStateChanged, null);
+        } else {
+            addListener(onCastSessionStateChangedListeners, new DeliveredListeners.StateChanged(onCastSessionStateChanged, executor), null);
+        }
+    }
 
-            @Override
-            public void onSessionStartFailed(CastSession castSession, int i) {
-                //no-op
-            }
+    public void removeOnCastSessionStateChanged(@NonNull OnCastSessionStateChanged onCastSessionStateChanged) {
+        removeListener(onCastSessionStateChangedListeners, onCastSessionStateChanged);
+    }
 
-            @Override
-            public void onSessionEnding(CastSession castSession) {
-                //no-op
-            }
+    /**
+     * Sets {@link OnCastQueueStatusListener}, which reports the progress of a queue loaded with
+     * {@link CasterPlayer#loadQueue(List, int)} and the items preloaded by the receiver. It replaces
+     * the one previously set with this method.
+     *
+     * @param onCastQueueStatusListener An instance of {@link OnCastQueueStatusListener}
+     */
+    public void setOnCastQueueStatusListener(@Nullable OnCastQueueStatusListener onCastQueueStatusListener) {
+        if (this.onCastQueueStatusListener != null) onCastQueueStatusListeners.remove(this.onCastQueueStatusListener);
+        if (onCastQueueStatusListener != null) onCastQueueStatusListeners.add(onCastQueueStatusListener);
 
-            @Override
-            public void onSessionResuming(CastSession castSession, String s) {
-                //no-op
-            }
+        this.onCastQueueStatusListener = onCastQueueStatusListener;
+    }
 
-            @Override
-            public void onSessionResumeFailed(CastSession castSession, int i) {
-                //no-op
-            }
+    /**
+     * Adds an {@link OnCastQueueStatusListener}. It's called until it's removed with
+     * {@link #removeOnCastQueueStatusListener(OnCastQueueStatusListener)}, or
+     * until the Activity this Caster object was created in is destroyed.
+     *
+     * @param onCastQueueStatusListener An instance of {@link OnCastQueueStatusListener}
+     */
+    public void addOnCastQueueStatusListener(@NonNull OnCastQueueStatusListener onCastQueueStatusListener) {
+        addListener(onCastQueueStatusListeners, onCastQueueStatusListener, null);
+    }
 
-            @Override
-            public void onSessionSuspended(CastSession castSession, int i) {
-                //no-op
-            }
-        };
+    /**
+     * Adds an {@link OnCastQueueStatusListener}, which is removed automatically once the owner is destroyed.
+     *
+     * @param owner The {@link LifecycleOwner} (e.g. Activity or Fragment) the listener belongs to
+     * @param onCastQueueStatusListener An instance of {@link OnCastQueueStatusListener}
+     */
+    public void addOnCastQueueStatusListener(@NonNull LifecycleOwner owner, @NonNull OnCastQueueStatusListener onCastQueueStatusListener) {
+        LifecycleSubscription.bind(owner, onCastQueueStatusListeners, onCastQueueStatusListener, null);
     }
 
-    private void onConnected(CastSession castSession) {
-        this.castSession = castSession;
+    /**
+     * Adds an {@link OnCastQueueStatusListener} which is called through the given executor, e.g. one of
+     * {@link CasterExecutors}. Every event is delivered once and in order: events are queued while the
+     * listener is busy, so a slow listener never blocks the main thread and never misses one.
+     *
+     * @param onCastQueueStatusListener An instance of {@link OnCastQueueStatusListener}
+     * @param executor Executor on which the listener is called
+     */
+    public void addOnCastQueueStatusListener(@NonNull OnCastQueueStatusListener onCastQueueStatusListener, @NonNull Executor executor) {
+        if (executor == CasterExecutors.direct()) {
+            addListener(onCastQueueStatusListeners, onCastQueueStatusListener, null);
+        } else {
+            addListener(onCastQueueStatusListeners, new DeliveredListeners.QueueStatus(onCastQueueStatusListener, executor), null);
+        }
+    }
 
-        casterPlayer.setRemoteMediaClient(castSession.getRemoteMediaClient());
+    public void removeOnCastQueueStatusListener(@NonNull OnCastQueueStatusListener onCastQueueStatusListener) {
+        removeListener(onCastQueueStatusListeners, onCastQueueStatusListener);
+    }
 
-        if (onConnectChangeListener != null) onConnectChangeListener.onConnected();
-        if (onCastSessionUpdatedListener != null) onCastSessionUpdatedListener.onCastSessionUpdated(castSession, true);
-        if (onCastSessionProgressUpdateListener != null) castSession.getRemoteMediaClient().addProgressListener(progressListener, progressListenerInterval);
-        if (onCastSessionStateChanged != null) castSession.getRemoteMediaClient().registerCallback(mediaListener);
+    /**
+     * Adds an {@link OnPlaybackStateChangedListener}, which is called on every real transition of the
+     * {@link PlaybackStateMachine}, including buffering and the idle reasons (finished, cancelled,
+     * interrupted, error).
+     *
+     * @param onPlaybackStateChangedListener An instance of {@link OnPlaybackStateChangedListener}
+     */
+    public void addOnPlaybackStateChangedListener(@NonNull OnPlaybackStateChangedListener onPlaybackStateChangedListener) {
+        addListener(onPlaybackStateChangedListeners, onPlaybackStateChangedListener, null);
     }
 
-    private void onDisconnected() {
-        if (onCastSessionProgressUpdateListener != null) {
-            try {
-                this.castSession.getRemoteMediaClient().removeProgressListener(progressListener);
-            } catch (Exception ignored){}
-        }
+    /**
+     * Adds an {@link OnPlaybackStateChangedListener}, which is removed automatically once the owner is destroyed.
+     *
+     * @param owner The {@link LifecycleOwner} (e.g. Activity or Fragment) the listener belongs to
+     * @param onPlaybackStateChangedListener An instance of {@link OnPlaybackStateChangedListener}
+     */
+    public void addOnPlaybackStateChangedListener(@NonNull LifecycleOwner owner, @NonNull OnPlaybackStateChangedListener onPlaybackStateChangedListener) {
+        LifecycleSubscription.bind(owner, onPlaybackStateChangedListeners, onPlaybackStateChangedListener, null);
+    }
 
-        if (onCastSessionStateChanged != null) {
-            try {
-                this.castSession.getRemoteMediaClient().unregisterCallback(mediaListener);
-            } catch (Exception ignored){}
-        }
+    public void removeOnPlaybackStateChangedListener(@NonNull OnPlaybackStateChangedListener onPlaybackStateChangedListener) {
+        removeListener(onPlaybackStateChangedListeners, onPlaybackStateChangedListener);
+    }
 
-        if (onConnectChangeListener != null) onConnectChangeListener.onDisconnected();
-        if (onCastSessionUpdatedListener != null) onCastSessionUpdatedListener.onCastSessionUpdated(castSession, false);
+    /**
+     * Gives access to the {@link PlaybackStateMachine}, which holds the current playback state and
+     * the latest transitions.
+     *
+     * @return the instance of {@link PlaybackStateMachine}
+     */
+    public PlaybackStateMachine getPlaybackStateMachine() {
+        return statusDispatcher.getStateMachine();
+    }
 
-        this.castSession = null;
+    /**
+     * Gives access to the {@link ConnectionMonitor}, which measures the round-trip time to the
+     * receiver, reports the quality of the link and reconnects after the session was suspended.
+     *
+     * @return the instance of {@link ConnectionMonitor}
+     */
+    public ConnectionMonitor getConnectionMonitor() {
+        return controller.getConnectionMonitor();
     }
 
-    private Application.ActivityLifecycleCallbacks createActivityCallbacks() {
-        final Activity theActivity = activity.get();
+    /**
+     * Adds an {@link OnConnectionQualityChangedListener}, which is called when the quality of the
+     * connection with the receiver changes, including when the session is suspended and when
+     * reconnecting is given up.
+     *
+     * @param onConnectionQualityChangedListener An instance of {@link OnConnectionQualityChangedListener}
+     */
+    public void addOnConnectionQualityChangedListener(@NonNull OnConnectionQualityChangedListener onConnectionQualityChangedListener) {
+        addListener(controller.getConnectionMonitor().getListeners(), onConnectionQualityChangedListener, null);
+    }
 
-        return new Application.ActivityLifecycleCallbacks() {
-            @Override
-            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
-                //no-op
-            }
+    /**
+     * Adds an {@link OnConnectionQualityChangedListener}, which is removed automatically once the owner is destroyed.
+     *
+     * @param owner The {@link LifecycleOwner} (e.g. Activity or Fragment) the listener belongs to
+     * @param onConnectionQualityChangedListener An instance of {@link OnConnectionQualityChangedListener}
+     */
+    public void addOnConnectionQualityChangedListener(@NonNull LifecycleOwner owner, @NonNull OnConnectionQualityChangedListener onConnectionQualityChangedListener) {
+        LifecycleSubscription.bind(owner, controller.getConnectionMonitor().getListeners(), onConnectionQualityChangedListener, null);
+    }
 
-            @Override
-            public void onActivityStarted(Activity activity) {
-                //no-op
-            }
+    public void removeOnConnectionQualityChangedListener(@NonNull OnConnectionQualityChangedListener onConnectionQualityChangedListener) {
+        removeListener(controller.getConnectionMonitor().getListeners(), onConnectionQualityChangedListener);
+    }
 
-            @Override
-            public void onActivityResumed(Activity activity) {
-                if (theActivity == null) return;
+    /**
+     * Gives access to {@link CasterMetrics}, which measures startup time, rebuffering, seek latency and
+     * the time spent in every playback state. Poll {@link CasterMetrics#snapshot()} to report them.
+     *
+     * @return the instance of {@link CasterMetrics}
+     */
+    public CasterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Adds a listener to one of the process-wide sets. If this Caster object is tied to an Activity,
+     * the listener is removed once the Activity is destroyed, so it can't keep the Activity alive.
+     *
+     * @return true if the listener was added, false if it already was
+     */
+    private <T> boolean addListener(ListenerSet<T> listenerSet, T listener, @Nullable Runnable onRemoved) {
+        if (!listenerSet.add(listener)) return false;
 
-                if (theActivity == activity) {
-                    handleCurrentCastSession();
-                    registerSessionManagerListener();
-                }
+        if (tiedToActivity) {
+            synchronized (addedListeners) {
+                addedListeners.add(new AddedListener<>(listenerSet, listener, onRemoved));
             }
+        }
 
-            @Override
-            public void onActivityPaused(Activity activity) {
-                if (theActivity == null) return;
+        return true;
+    }
 
-                if (theActivity == activity) unregisterSessionManagerListener();
+    private <T> boolean removeListener(ListenerSet<T> listenerSet, T listener) {
+        synchronized (addedListeners) {
+            for (Iterator<AddedListener<?>> iterator = addedListeners.iterator(); iterator.hasNext(); ) {
+                AddedListener<?> added = iterator.next();
+                if (added.listenerSet == listenerSet && added.wraps(listener)) iterator.remove();
             }
+        }
 
-            @Override
-            public void onActivityStopped(Activity activity) {
-                //no-op
-            }
+        return listenerSet.remove(listener);
+    }
 
-            @Override
-            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
-                //no-op
-            }
+    private void removeAddedListeners() {
+        List<AddedListener<?>> removed;
+
+        synchronized (addedListeners) {
+            removed = new ArrayList<>(addedListeners);
+            addedListeners.clear();
+        }
 
-            @Override
-            public void onActivityDestroyed(Activity activity) {
-                if (theActivity == null) return;
+        for (AddedListener<?> added : removed) {
+            added.remove();
+        }
+    }
+
+    private void setUpMediaRouteMenuItem(Menu menu) {
+        Activity theActivity = activity.get();
+        if (theActivity == null) return;
+
+        CastButtonFactory.setUpMediaRouteButton(theActivity, menu, R.id.caster_media_route_menu_item);
+    }
 
-                if (theActivity == activity) {
-                    activity.getApplication().unregisterActivityLifecycleCallbacks(this);
-                }
+    private void showIntroductionOverlay() {
+        if (introductionOverlays.size() > 0) {
+            for (IntroductoryOverlay io : introductionOverlays) {
+                io.show();
             }
-        };
+        }
     }
 
     private IntroductoryOverlay createIntroductionOverlay(MenuItem menuItem) {
@@ -547,50 +876,25 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
                 .build();
     }
 
-    private void registerSessionManagerListener() {
-        Activity theActivity = activity.get();
-        if (theActivity == null) return;
-
-        CastContext.getSharedInstance(theActivity).getSessionManager().addSessionManagerListener(sessionManagerListener, CastSession.class);
-    }
-
-    private void unregisterSessionManagerListener() {
-        Activity theActivity = activity.get();
-        if (theActivity == null) return;
-
-        CastContext.getSharedInstance(theActivity).getSessionManager().removeSessionManagerListener(sessionManagerListener, CastSession.class);
-    }
-
-    private void handleCurrentCastSession() {
-        Activity theActivity = activity.get();
-        if (theActivity == null) return;
+    private static final class AddedListener<T> {
+        final ListenerSet<T> listenerSet;
+        final T listener;
+        final Runnable onRemoved;
 
-        CastSession newCastSession = CastContext.getSharedInstance(theActivity).getSessionManager().getCurrentCastSession();
-        if (castSession == null) {
-            if (newCastSession != null) {
-                onConnected(newCastSession);
-            }
-        } else {
-            if (newCastSession == null) {
-                onDisconnected();
-            } else if (newCastSession != castSession) {
-                onConnected(newCastSession);
-            }
+        AddedListener(ListenerSet<T> listenerSet, T listener, @Nullable Runnable onRemoved) {
+            this.listenerSet = listenerSet;
+            this.listener = listener;
+            this.onRemoved = onRemoved;
         }
-    }
 
-    @Override
-    public void onMediaLoaded() {
-        if (onCastSessionStateChanged != null) onCastSessionStateChanged.onCastSessionBegan();
-        startExpandedControlsActivity();
-    }
-
-    private void startExpandedControlsActivity() {
-        Activity theActivity = activity.get();
-        if (theActivity == null) return;
+        boolean wraps(Object other) {
+            return listener == other
+                    || listener instanceof ListenerSet.Delegating && ((ListenerSet.Delegating) listener).getDelegate() == other;
+        }
 
-        Intent intent = new Intent(theActivity, ExpandedControlsActivity.class);
-        theActivity.startActivity(intent);
+        void remove() {
+            if (listenerSet.remove(listener) && onRemoved != null) onRemoved.run();
+        }
     }
 
     public interface OnConnectChangeListener {
@@ -602,7 +906,7 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
         void onCastSessionUpdated(@NonNull CastSession castSession, Boolean isConnected);
     }
 
-    public interface OnCastSessionProgressUpdateListener {
+    public interface OnCastSessionProgressUpdateListener extends MediaClient.ProgressListener {
         void onProgressUpdated(long progressMs, long durationMs);
     }
 
@@ -612,4 +916,18 @@ public class Caster implements CasterPlayer.OnMediaLoadedListener {
         void onCastSessionPlaying();
         void onCastSessionPaused();
     }
+
+    public interface OnPlaybackStateChangedListener extends PlaybackStateMachine.Listener {
+        void onPlaybackStateChanged(@PlaybackStateMachine.State int previousState,
+                                    @PlaybackStateMachine.State int newState, long timestamp);
+    }
+
+    public interface OnConnectionQualityChangedListener extends ConnectionMonitor.Listener {
+        void onConnectionQualityChanged(@ConnectionMonitor.Quality int quality, long roundTripTimeMs);
+    }
+
+    public interface OnCastQueueStatusListener {
+        void onQueueStatusUpdated(int currentItemIndex, int itemCount);
+        void onPreloadStatusUpdated(@Nullable String preloadedMediaUrl);
+    }
 }
@@ -0,0 +1,80 @@
+package com.mradzinski.caster;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executors which can be used to deliver Caster's callbacks, e.g. with
+ * {@link Caster#addOnCastSessionProgressUpdateListener(Caster.OnCastSessionProgressUpdateListener, Executor)}.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CasterExecutors {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final Executor MAIN_THREAD = new Executor() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            handler.post(command);
+        }
+    };
+
+    private static volatile ExecutorService background;
+
+    private CasterExecutors() { /* no-op */ }
+
+    /**
+     * @return an executor which runs the callbacks right away on the thread that produced them
+     * (the main thread for every Caster event)
+     */
+    public static Executor direct() {
+        return DIRECT;
+    }
+
+    /**
+     * @return an executor which posts the callbacks to the main thread, after the current event
+     * has been fully handled
+     */
+    public static Executor mainThread() {
+        return MAIN_THREAD;
+    }
+
+    /**
+     * @return a single background thread shared by every listener delivered on it
+     */
+    public static Executor background() {
+        if (background == null) {
+            synchronized (CasterExecutors.class) {
+                if (background == null) background = newSerialExecutor("Caster-callbacks");
+            }
+        }
+
+        return background;
+    }
+
+    /**
+     * @return a new executor running its tasks one at a time, in order, on a daemon thread
+     */
+    static ExecutorService newSerialExecutor(final String threadName) {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -7,9 +7,11 @@ import android.view.Menu;
 
 class CasterNoOp extends Caster {
     private CasterPlayer casterPlayer;
+    private CasterMetrics casterMetrics;
 
     CasterNoOp() {
         casterPlayer = new CasterPlayerNoOp();
+        casterMetrics = new CasterMetricsNoOp();
     }
 
     @Override
@@ -17,6 +19,11 @@ class CasterNoOp extends Caster {
         return casterPlayer;
     }
 
+    @Override
+    public CasterMetrics getMetrics() {
+        return casterMetrics;
+    }
+
     @Override
     public boolean isConnected() {
         return false;
@@ -51,4 +58,9 @@ class CasterNoOp extends Caster {
     public void setOnCastSessionUpdatedListener(@Nullable OnCastSessionUpdatedListener onCastSessionUpdatedListener) {
         //no-op
     }
+
+    @Override
+    public void setOnCastQueueStatusListener(@Nullable OnCastQueueStatusListener onCastQueueStatusListener) {
+        //no-op
+    }
 }
@@ -1,39 +1,242 @@
 package com.mradzinski.caster;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.AnyThread;
+import android.support.annotation.IntDef;
 import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.text.TextUtils;
 import android.util.Log;
 
+import com.google.android.gms.cast.CastStatusCodes;
 import com.google.android.gms.cast.MediaInfo;
 import com.google.android.gms.cast.MediaLoadOptions;
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.MediaStatus;
 import com.google.android.gms.cast.framework.media.RemoteMediaClient;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
 public class CasterPlayer {
     private static final String TAG = "Caster";
+    private static final long REUSE_SEEK_TOLERANCE_MS = 2000L;
+    private static final long NO_MEDIA_SESSION = -1L;
+    private static final long DEFAULT_SEEK_MIN_INTERVAL_MS = 250L;
+    private static final long DEFAULT_VOLUME_MIN_INTERVAL_MS = 100L;
+    public static final int DEFAULT_QUEUE_WINDOW_SIZE = 20;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({LOAD_MODE_ALWAYS_RELOAD, LOAD_MODE_REUSE_CURRENT})
+    public @interface LoadMode {}
+    public static final int LOAD_MODE_ALWAYS_RELOAD = 0;
+    public static final int LOAD_MODE_REUSE_CURRENT = 1;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     private RemoteMediaClient remoteMediaClient;
+    private MediaClient mediaClient;
     private OnMediaLoadedListener onMediaLoadedListener;
+    private final CasterMetrics metrics;
+    private final StatusDispatcher statusDispatcher;
+    private int loadMode = LOAD_MODE_ALWAYS_RELOAD;
+
+    private final CallbackRegistry callbacks = new CallbackRegistry();
+    private final RemoteMediaClient.Callback mediaLoadedCallback = createRemoteMediaClientListener();
+
+    private final CommandBuffer commandBuffer;
+    private boolean suspended = false;
+
+    private final MediaInfoCache mediaInfoCache = new MediaInfoCache();
+    private ResumeStore resumeStore;
+    private boolean autoResume = false;
+    private final QueueSync queueSync;
+    private final WindowedQueue windowedQueue;
+
+    private final CommandCoalescer seekCoalescer;
+    private final CommandCoalescer volumeCoalescer;
 
     //Needed for NoOp instance
-    CasterPlayer() { /* no-op */ }
+    CasterPlayer() {
+        this(null, new CasterMetricsNoOp(), new StatusDispatcher(Clock.SYSTEM, new CasterMetricsNoOp()));
+        // Nothing is ever played, so nothing is ever recorded
+        resumeStore = new ResumeStore(null, AndroidPlatform.INSTANCE, CasterExecutors.direct());
+    }
 
-    CasterPlayer(OnMediaLoadedListener onMediaLoadedListener) {
+    CasterPlayer(OnMediaLoadedListener onMediaLoadedListener, CasterMetrics metrics, StatusDispatcher statusDispatcher) {
         this.onMediaLoadedListener = onMediaLoadedListener;
+        this.metrics = metrics;
+        this.statusDispatcher = statusDispatcher;
+        this.commandBuffer = new CommandBuffer(AndroidPlatform.INSTANCE, metrics);
+        this.queueSync = new QueueSync(metrics, mediaInfoCache);
+        this.windowedQueue = new WindowedQueue(metrics, mediaInfoCache);
+
+        seekCoalescer = new CommandCoalescer(AndroidPlatform.INSTANCE, AndroidPlatform.INSTANCE, metrics,
+                CasterMetrics.COMMAND_SEEK, DEFAULT_SEEK_MIN_INTERVAL_MS) {
+            @Override
+            MediaClient.PendingCommand send(double value) {
+                return mediaClient != null ? mediaClient.seek((long) value) : null;
+            }
+        };
+
+        volumeCoalescer = new CommandCoalescer(AndroidPlatform.INSTANCE, AndroidPlatform.INSTANCE, metrics,
+                CasterMetrics.COMMAND_SET_VOLUME, DEFAULT_VOLUME_MIN_INTERVAL_MS) {
+            @Override
+            MediaClient.PendingCommand send(double value) {
+                return mediaClient != null ? mediaClient.setStreamVolume(value) : null;
+            }
+        };
     }
 
     void setRemoteMediaClient(RemoteMediaClient remoteMediaClient) {
         this.remoteMediaClient = remoteMediaClient;
+        callbacks.setClient(remoteMediaClient);
+        this.mediaClient = remoteMediaClient != null ? new RemoteMediaClientAdapter(remoteMediaClient) : null;
+        queueSync.setRemoteMediaClient(remoteMediaClient);
+        windowedQueue.setRemoteMediaClient(remoteMediaClient);
+
+        seekCoalescer.reset();
+        volumeCoalescer.reset();
+        statusDispatcher.setMediaClient(mediaClient);
+        statusDispatcher.updateStatus();
     }
 
     public RemoteMediaClient getRemoteMediaClient() { return this.remoteMediaClient; }
 
+    void setResumeStore(ResumeStore resumeStore) {
+        this.resumeStore = resumeStore;
+    }
+
+    /**
+     * Gets the positions where the playback of every media stopped, recorded from the receiver's
+     * progress and kept across app restarts.
+     *
+     * @return the {@link ResumeStore} of this player
+     */
+    public @NonNull ResumeStore getResumeStore() {
+        return resumeStore;
+    }
+
+    /**
+     * Sets whether media loaded from a {@link MediaData} without a start position resume where
+     * their playback stopped last time, according to the {@link ResumeStore}. Defaults to false.
+     *
+     * @param autoResume True to resume the media automatically
+     */
+    public void setAutoResume(boolean autoResume) {
+        this.autoResume = autoResume;
+    }
+
+    public boolean isAutoResume() {
+        return autoResume;
+    }
+
+    private long getStartPosition(MediaData mediaData) {
+        if (!autoResume || mediaData.getPosition() != 0 || mediaData.getUrl() == null) return mediaData.getPosition();
+
+        long position = resumeStore.getPosition(mediaData.getUrl());
+        return position != ResumeStore.NO_POSITION ? position : 0;
+    }
+
+    /**
+     * While suspended, play, pause, seek and volume commands are buffered instead of sent, see
+     * {@link CommandBuffer}.
+     */
+    void setSuspended(boolean suspended) {
+        this.suspended = suspended;
+    }
+
+    /**
+     * Drops the buffered commands, e.g. once reconnecting is given up.
+     */
+    void discardBufferedCommands() {
+        commandBuffer.clear();
+    }
+
+    /**
+     * Replays the commands buffered while suspended, once the receiver reports a media they can
+     * apply to.
+     */
+    void replayBufferedCommands() {
+        if (suspended || mediaClient == null || commandBuffer.isEmpty()) return;
+        if (getStatus().getContentId() == null) return;
+
+        int sent = commandBuffer.replay(mediaClient);
+        Log.i(TAG, "Replayed " + sent + " command(s) buffered while disconnected.");
+    }
+
+    /**
+     * Sets how long the commands given while the session is suspended are kept. Older ones are
+     * dropped instead of being replayed once the session is back. Defaults to 30 seconds.
+     *
+     * @param maxAgeMs the age limit in milliseconds
+     */
+    public void setCommandBufferMaxAge(long maxAgeMs) {
+        commandBuffer.setMaxAge(maxAgeMs);
+    }
+
+    /**
+     * Gets the cache of the {@link MediaInfo}s built from the loaded {@link MediaData}, e.g. to
+     * resize it, read its hit rate or invalidate a media whose information changed.
+     *
+     * @return the {@link MediaInfoCache} of this player
+     */
+    @AnyThread
+    public @NonNull MediaInfoCache getMediaInfoCache() {
+        return mediaInfoCache;
+    }
+
+    /**
+     * Keeps the window of a windowed queue in step with the playback.
+     */
+    void onQueueStatusUpdated() {
+        windowedQueue.onQueueStatusUpdated();
+    }
+
+    /**
+     * Gets the latest snapshot of the receiver's media status. It's rebuilt once per status update,
+     * so it can be read as often as needed from any thread.
+     *
+     * @return the latest {@link CasterStatus}, never null
+     */
+    @AnyThread
+    public @NonNull CasterStatus getStatus() {
+        return statusDispatcher.getStatus();
+    }
+
+    /**
+     * Sets how single media loads behave when the receiver is already playing the same content
+     * (same URL, content type and stream type). Defaults to {@link #LOAD_MODE_ALWAYS_RELOAD}.
+     *
+     * <p>With {@link #LOAD_MODE_REUSE_CURRENT} the load is turned into a seek (only if a start position
+     * was requested), a playback rate change, a play (if auto play was requested and the media is paused)
+     * or nothing at all, so the receiver doesn't restart and rebuffer the stream. The expanded controls
+     * are opened as usual.</p>
+     *
+     * @param loadMode One of {@link #LOAD_MODE_ALWAYS_RELOAD}, {@link #LOAD_MODE_REUSE_CURRENT}
+     */
+    public void setLoadMode(@LoadMode int loadMode) {
+        this.loadMode = loadMode;
+    }
+
+    public @LoadMode int getLoadMode() {
+        return loadMode;
+    }
+
     /**
      * Plays the current media file if it is paused
      */
     public void play() {
-        if (isPaused()) {
-            remoteMediaClient.play();
+        if (suspended) {
+            commandBuffer.play();
+        } else if (remoteMediaClient != null && isPaused()) {
+            metrics.trackCommand(CasterMetrics.COMMAND_PLAY, mediaClient.play(), null);
         } else {
             Log.i(TAG, "Unable to play. Either remoteMediaClient is null or " +
                     "the curret media file isn't paused");
@@ -44,8 +247,10 @@ public class CasterPlayer {
      * Pauses the current media file if it is playing
      */
     public void pause() {
-        if (isPlaying()) {
-            remoteMediaClient.pause();
+        if (suspended) {
+            commandBuffer.pause();
+        } else if (remoteMediaClient != null && isPlaying()) {
+            metrics.trackCommand(CasterMetrics.COMMAND_PAUSE, mediaClient.pause(), null);
         } else {
             Log.i(TAG, "Unable to pause. Either remoteMediaClient is null or " +
                     "the curret media file isn't playing");
@@ -53,27 +258,109 @@ public class CasterPlayer {
     }
 
     /**
-     * Seeks the current media file
+     * Seeks the current media file. At most one seek is in flight at a time, seeks requested
+     * meanwhile (e.g. while dragging a seekbar) are collapsed into the latest one.
      *
      * @param time the number of milliseconds to seek by
+     * @see #setSeekMinInterval(long)
      */
+    @MainThread
     public void seek(long time) {
-        if (remoteMediaClient != null) {
-            remoteMediaClient.seek(time);
+        if (suspended) {
+            commandBuffer.seek(time);
+        } else if (remoteMediaClient != null) {
+            metrics.onSeekRequested(SystemClock.elapsedRealtime());
+            seekCoalescer.submit(time);
         } else {
             Log.i(TAG, "Unable to seek. remoteMediaClient is null.");
         }
     }
 
+    /**
+     * Sets the stream volume of the current media file. At most one volume change is in flight at a time,
+     * changes requested meanwhile (e.g. while holding the volume rocker) are collapsed into the latest one.
+     *
+     * @param volume the stream volume, between 0.0 and 1.0
+     * @see #setVolumeMinInterval(long)
+     */
+    @MainThread
+    public void setVolume(double volume) {
+        if (suspended) {
+            commandBuffer.setVolume(Math.max(0.0, Math.min(1.0, volume)));
+        } else if (remoteMediaClient != null) {
+            volumeCoalescer.submit(Math.max(0.0, Math.min(1.0, volume)));
+        } else {
+            Log.i(TAG, "Unable to set volume. remoteMediaClient is null.");
+        }
+    }
+
+    /**
+     * Sets the minimum interval between two seek requests sent to the receiver. Defaults to 250 ms.
+     *
+     * @param minIntervalMs the interval in milliseconds
+     */
+    public void setSeekMinInterval(long minIntervalMs) {
+        seekCoalescer.setMinInterval(minIntervalMs);
+    }
+
+    /**
+     * Sets the minimum interval between two volume requests sent to the receiver. Defaults to 100 ms.
+     *
+     * @param minIntervalMs the interval in milliseconds
+     */
+    public void setVolumeMinInterval(long minIntervalMs) {
+        volumeCoalescer.setMinInterval(minIntervalMs);
+    }
+
+    /**
+     * @return the number of seek requests which were collapsed into a later one and never sent
+     */
+    public long getCollapsedSeekCount() {
+        return seekCoalescer.getCollapsedCount();
+    }
+
+    /**
+     * @return the number of commands given while the session was suspended which were collapsed into
+     * a later one and never sent
+     */
+    public long getCollapsedBufferedCommandCount() {
+        return commandBuffer.getCollapsedCount();
+    }
+
+    /**
+     * @return the number of commands given while the session was suspended which were dropped for
+     * being older than the age limit
+     * @see #setCommandBufferMaxAge(long)
+     */
+    public long getExpiredBufferedCommandCount() {
+        return commandBuffer.getExpiredCount();
+    }
+
+    /**
+     * @return the number of volume requests which were collapsed into a later one and never sent
+     */
+    public long getCollapsedVolumeCount() {
+        return volumeCoalescer.getCollapsedCount();
+    }
+
     /**
      * Tries to play or pause the current media file, depending of the current state
      */
     public void togglePlayPause() {
-        if (remoteMediaClient != null) {
-            if (remoteMediaClient.isPlaying()) {
-                remoteMediaClient.pause();
-            } else if (remoteMediaClient.isPaused()) {
-                remoteMediaClient.play();
+        if (suspended) {
+            int intent = commandBuffer.getPlayIntent();
+            boolean playing = intent == CommandBuffer.INTENT_NONE ? isPlaying() : intent == CommandBuffer.INTENT_PLAY;
+
+            if (playing) {
+                commandBuffer.pause();
+            } else {
+                commandBuffer.play();
+            }
+        } else if (remoteMediaClient != null) {
+            if (isPlaying()) {
+                metrics.trackCommand(CasterMetrics.COMMAND_PAUSE, mediaClient.pause(), null);
+            } else if (isPaused()) {
+                metrics.trackCommand(CasterMetrics.COMMAND_PLAY, mediaClient.play(), null);
             }
         } else {
             Log.i(TAG, "Unable to toggle play/pause. remoteMediaClient is null.");
@@ -86,7 +373,7 @@ public class CasterPlayer {
      * @return true if the media file is playing, false otherwise
      */
     public boolean isPlaying() {
-        return remoteMediaClient != null && remoteMediaClient.isPlaying();
+        return getStatus().isPlaying();
     }
 
     /**
@@ -95,7 +382,7 @@ public class CasterPlayer {
      * @return true if the media file is paused, false otherwise
      */
     public boolean isPaused() {
-        return remoteMediaClient != null && remoteMediaClient.isPaused();
+        return getStatus().isPaused();
     }
 
     /**
@@ -104,7 +391,7 @@ public class CasterPlayer {
      * @return true if the media file is buffering, false otherwise
      */
     public boolean isBuffering() {
-        return remoteMediaClient != null && remoteMediaClient.isBuffering();
+        return getStatus().isBuffering();
     }
 
     /**
@@ -113,13 +400,7 @@ public class CasterPlayer {
      * @return The current playing media URL or null if no media has been enqueued to be played.
      */
     public @Nullable String getCurrentPlayingMediaUrl() {
-        if (remoteMediaClient == null) return null;
-
-        try {
-            return remoteMediaClient.getCurrentItem().getMedia().getContentId();
-        } catch (Exception ignored) {
-            return null;
-        }
+        return getStatus().getContentId();
     }
 
     /**
@@ -132,8 +413,8 @@ public class CasterPlayer {
     @MainThread
     @SuppressWarnings("UnusedReturnValue")
     public boolean loadMediaAndPlay(@NonNull MediaData mediaData) {
-        return loadMediaAndPlay(mediaData.createMediaInfo(), mediaData.isAutoPlay(),
-                mediaData.getPosition(), mediaData.getPlaybackRate());
+        return loadMediaAndPlay(mediaInfoCache.get(mediaData), mediaData.isAutoPlay(),
+                getStartPosition(mediaData), mediaData.getPlaybackRate());
     }
 
     /**
@@ -171,8 +452,8 @@ public class CasterPlayer {
      */
     @MainThread
     public boolean loadMediaAndPlayInBackground(@NonNull MediaData mediaData) {
-        return loadMediaAndPlayInBackground(mediaData.createMediaInfo(), mediaData.isAutoPlay(),
-                mediaData.getPosition(), mediaData.getPlaybackRate());
+        return loadMediaAndPlayInBackground(mediaInfoCache.get(mediaData), mediaData.isAutoPlay(),
+                getStartPosition(mediaData), mediaData.getPlaybackRate());
     }
 
     /**
@@ -201,9 +482,311 @@ public class CasterPlayer {
         return playMediaBaseMethod(mediaInfo, autoPlay, position, rate, true);
     }
 
+    /**
+     * Prepares the media on the given executor and then loads it and plays it in the
+     * {@link ExpandedControlsActivity}. Only the final load request is sent from the main thread.
+     *
+     * @param mediaData Information about the media
+     * @param executor Executor on which the media is prepared
+     * @return a {@link LoadHandle} which allows to cancel the load and to track its progress
+     * @see MediaData
+     */
+    @AnyThread
+    public LoadHandle loadMediaAndPlayAsync(@NonNull final MediaData mediaData, @NonNull Executor executor) {
+        return loadMediaAndPlayAsync(new Callable<MediaData>() {
+            @Override
+            public MediaData call() {
+                return mediaData;
+            }
+        }, executor);
+    }
+
+    /**
+     * Runs the given {@link Callable} on the executor to obtain the media (e.g. from a catalog lookup),
+     * prepares it there and then loads it and plays it in the {@link ExpandedControlsActivity}.
+     * Only the final load request is sent from the main thread.
+     *
+     * @param mediaDataProvider Provider of the information about the media
+     * @param executor Executor on which the media is obtained and prepared
+     * @return a {@link LoadHandle} which allows to cancel the load and to track its progress
+     * @see MediaData
+     */
+    @AnyThread
+    public LoadHandle loadMediaAndPlayAsync(@NonNull Callable<MediaData> mediaDataProvider, @NonNull Executor executor) {
+        return loadAsyncBaseMethod(mediaDataProvider, executor, false);
+    }
+
+    /**
+     * Prepares the media on the given executor and then loads it and plays it in background.
+     * Only the final load request is sent from the main thread.
+     *
+     * @param mediaDataProvider Provider of the information about the media
+     * @param executor Executor on which the media is obtained and prepared
+     * @return a {@link LoadHandle} which allows to cancel the load and to track its progress
+     * @see MediaData
+     */
+    @AnyThread
+    public LoadHandle loadMediaAndPlayInBackgroundAsync(@NonNull Callable<MediaData> mediaDataProvider, @NonNull Executor executor) {
+        return loadAsyncBaseMethod(mediaDataProvider, executor, true);
+    }
+
+    private LoadHandle loadAsyncBaseMethod(final Callable<MediaData> mediaDataProvider, Executor executor, final boolean inBackground) {
+        final LoadHandle handle = new LoadHandle();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (handle.isCancelled()) return;
+
+                final MediaData mediaData;
+                final MediaInfo mediaInfo;
+
+                try {
+                    mediaData = mediaDataProvider.call();
+                    mediaInfo = mediaInfoCache.get(mediaData);
+                } catch (final Exception e) {
+                    Log.w(TAG, "Unable to prepare the media to be loaded", e);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            handle.markFailed(e);
+                        }
+                    });
+                    return;
+                }
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (remoteMediaClient == null) {
+                            handle.markFailed(null);
+                            return;
+                        }
+
+                        if (!handle.markSent()) return;
+
+                        playMediaBaseMethod(mediaInfo, mediaData.isAutoPlay(), getStartPosition(mediaData),
+                                mediaData.getPlaybackRate(), inBackground, handle);
+                    }
+                });
+            }
+        });
+
+        return handle;
+    }
+
+    /**
+     * Loads a queue of media files on the receiver and plays it in the {@link ExpandedControlsActivity}.
+     * The receiver preloads every following item before the current one ends, according to
+     * its {@link MediaData#getPreloadTime()}.
+     *
+     * @param mediaDataList Information about every media file of the queue
+     * @param startIndex Index of the item which should be played first
+     * @return true if attempt was successful, false otherwise
+     * @see MediaData
+     */
+    @MainThread
+    public boolean loadQueue(@NonNull List<MediaData> mediaDataList, int startIndex) {
+        return loadQueueBaseMethod(mediaDataList, startIndex, false);
+    }
+
+    /**
+     * Loads a queue of media files on the receiver and plays it in background.
+     *
+     * @param mediaDataList Information about every media file of the queue
+     * @param startIndex Index of the item which should be played first
+     * @return true if attempt was successful, false otherwise
+     * @see MediaData
+     */
+    @MainThread
+    public boolean loadQueueInBackground(@NonNull List<MediaData> mediaDataList, int startIndex) {
+        return loadQueueBaseMethod(mediaDataList, startIndex, true);
+    }
+
+    /**
+     * Appends a media file at the end of the queue currently loaded on the receiver.
+     *
+     * @param mediaData Information about the media
+     * @return true if attempt was successful, false otherwise
+     * @see MediaData
+     */
+    @MainThread
+    public boolean appendToQueue(@NonNull MediaData mediaData) {
+        if (remoteMediaClient == null || remoteMediaClient.getMediaStatus() == null) return false;
+
+        metrics.trackCommand(CasterMetrics.COMMAND_QUEUE_INSERT, RemoteMediaClientAdapter.wrap(
+                remoteMediaClient.queueAppendItem(createMediaQueueItem(mediaData), null)), null);
+
+        return true;
+    }
+
+    /**
+     * Appends media files at the end of the queue currently loaded on the receiver.
+     *
+     * @param mediaDataList Information about every media file to append
+     * @return true if attempt was successful, false otherwise
+     * @see MediaData
+     */
+    @MainThread
+    public boolean appendToQueue(@NonNull List<MediaData> mediaDataList) {
+        if (remoteMediaClient == null || remoteMediaClient.getMediaStatus() == null) return false;
+        if (mediaDataList.isEmpty()) return false;
+
+        metrics.trackCommand(CasterMetrics.COMMAND_QUEUE_INSERT, RemoteMediaClientAdapter.wrap(remoteMediaClient.queueInsertItems(
+                createMediaQueueItems(mediaDataList), MediaQueueItem.INVALID_ITEM_ID, null)), null);
+
+        return true;
+    }
+
+    /**
+     * Turns the queue currently loaded on the receiver into the given one with the fewest insert,
+     * remove, reorder and update requests. Nothing is reloaded, so the item playing goes on unless
+     * it isn't in the given list. If no queue is loaded yet, it's loaded from its first item.
+     *
+     * @param mediaDataList Information about every media file of the wanted queue, in order
+     * @return true if attempt was successful, false otherwise
+     * @see MediaData
+     */
+    @MainThread
+    public boolean updateQueue(@NonNull List<MediaData> mediaDataList) {
+        if (remoteMediaClient == null) return false;
+        windowedQueue.stop();
+        if (!queueSync.hasQueue()) return loadQueue(mediaDataList, 0);
+
+        queueSync.sync(mediaDataList);
+        return true;
+    }
+
+    /**
+     * Plays a playlist too long to be queued on the receiver at once, e.g. a whole music library, in
+     * the {@link ExpandedControlsActivity}. Only a window of {@link #DEFAULT_QUEUE_WINDOW_SIZE} items
+     * is queued: items are pulled from the source a page at a time as the playback moves forward, and
+     * the played ones are removed. So the queue's size doesn't depend on the playlist's length.
+     *
+     * @param source Supplies the items of the playlist
+     * @param startIndex Index in the playlist of the item which should be played first
+     * @return true if attempt was successful, false otherwise
+     * @see PagingSource
+     */
+    @MainThread
+    public boolean loadWindowedQueue(@NonNull PagingSource source, int startIndex) {
+        return loadWindowedQueueBaseMethod(source, startIndex, DEFAULT_QUEUE_WINDOW_SIZE, false);
+    }
+
+    /**
+     * Like {@link #loadWindowedQueue(PagingSource, int)} with a window of the given size.
+     *
+     * @param windowSize Maximum number of items queued on the receiver, at least 3
+     */
+    @MainThread
+    public boolean loadWindowedQueue(@NonNull PagingSource source, int startIndex, int windowSize) {
+        return loadWindowedQueueBaseMethod(source, startIndex, windowSize, false);
+    }
+
+    /**
+     * Like {@link #loadWindowedQueue(PagingSource, int, int)}, but plays in background.
+     */
+    @MainThread
+    public boolean loadWindowedQueueInBackground(@NonNull PagingSource source, int startIndex, int windowSize) {
+        return loadWindowedQueueBaseMethod(source, startIndex, windowSize, true);
+    }
+
+    private boolean loadWindowedQueueBaseMethod(PagingSource source, int startIndex, int windowSize,
+                                                final boolean inBackground) {
+        if (remoteMediaClient == null) return false;
+        if (startIndex < 0 || windowSize < WindowedQueue.MIN_WINDOW_SIZE) return false;
+
+        windowedQueue.start(source, startIndex, windowSize, new WindowedQueue.Loader() {
+            @Override
+            public boolean loadQueue(@NonNull MediaQueueItem[] items, long position) {
+                return loadQueueItems(items, 0, position, inBackground);
+            }
+        });
+
+        return true;
+    }
+
+    private boolean loadQueueBaseMethod(List<MediaData> mediaDataList, int startIndex, boolean inBackground) {
+        if (remoteMediaClient == null) return false;
+        if (startIndex < 0 || startIndex >= mediaDataList.size()) return false;
+        windowedQueue.stop();
+
+        return loadQueueItems(createMediaQueueItems(mediaDataList), startIndex,
+                getStartPosition(mediaDataList.get(startIndex)), inBackground);
+    }
+
+    private boolean loadQueueItems(MediaQueueItem[] items, int startIndex, long position, boolean inBackground) {
+        if (remoteMediaClient == null) return false;
+        // A load which couldn't be followed isn't sent
+        if (!inBackground && !callbacks.register(mediaLoadedCallback)) return false;
+        // Commands buffered for the previous media don't apply to the new one
+        commandBuffer.clear();
+
+        metrics.onLoadRequested(SystemClock.elapsedRealtime());
+        metrics.trackCommand(CasterMetrics.COMMAND_QUEUE_LOAD, RemoteMediaClientAdapter.wrap(remoteMediaClient.queueLoad(
+                items, startIndex, MediaStatus.REPEAT_MODE_REPEAT_OFF, position, null)), null);
+
+        return true;
+    }
+
+    private MediaQueueItem[] createMediaQueueItems(List<MediaData> mediaDataList) {
+        MediaQueueItem[] items = new MediaQueueItem[mediaDataList.size()];
+
+        for (int i = 0; i < items.length; i++) {
+            items[i] = createMediaQueueItem(mediaDataList.get(i));
+        }
+
+        return items;
+    }
+
+    private MediaQueueItem createMediaQueueItem(MediaData mediaData) {
+        return mediaData.createMediaQueueItem(mediaInfoCache.get(mediaData), null);
+    }
+
     private boolean playMediaBaseMethod(MediaInfo mediaInfo, boolean autoPlay, long position, double rate, boolean inBackground) {
+        return playMediaBaseMethod(mediaInfo, autoPlay, position, rate, inBackground, null);
+    }
+
+    private boolean playMediaBaseMethod(MediaInfo mediaInfo, boolean autoPlay, long position, double rate,
+                                        boolean inBackground, @Nullable LoadHandle handle) {
         if (remoteMediaClient == null) return false;
-        if (!inBackground) remoteMediaClient.registerCallback(createRemoteMediaClientListener());
+
+        final FirstPlayingListener firstPlayingListener = handle != null
+                ? new FirstPlayingListener(handle, mediaInfo.getContentId()) : null;
+        boolean reuse = loadMode == LOAD_MODE_REUSE_CURRENT && canReuseCurrentMedia(mediaInfo);
+
+        // A load which couldn't be followed isn't sent
+        if (firstPlayingListener != null && !callbacks.register(firstPlayingListener)) {
+            return onCallbacksOverflow(handle);
+        }
+
+        if (!reuse && !inBackground && !callbacks.register(mediaLoadedCallback)) {
+            if (firstPlayingListener != null) callbacks.unregister(firstPlayingListener);
+            return onCallbacksOverflow(handle);
+        }
+
+        windowedQueue.stop();
+        // Commands buffered for the previous media don't apply to the new one
+        commandBuffer.clear();
+
+        if (reuse) {
+            // The media playing is the requested one, no new media session is created
+            reuseCurrentMedia(autoPlay, position, rate, inBackground);
+            return true;
+        }
+
+        MediaClient.ResultListener loadResultListener = null;
+
+        if (firstPlayingListener != null) {
+            firstPlayingListener.ignoreSession(getMediaSessionId(remoteMediaClient.getMediaStatus(), mediaInfo.getContentId()));
+
+            loadResultListener = new MediaClient.ResultListener() {
+                @Override
+                public void onResult(int statusCode, boolean success) {
+                    firstPlayingListener.onLoadResult(statusCode, success);
+                }
+            };
+        }
 
         MediaLoadOptions options = new MediaLoadOptions.Builder()
                 .setAutoplay(autoPlay)
@@ -211,17 +794,66 @@ public class CasterPlayer {
                 .setPlaybackRate(rate)
                 .build();
 
-        remoteMediaClient.load(mediaInfo, options);
+        metrics.onLoadRequested(SystemClock.elapsedRealtime());
+        metrics.trackCommand(CasterMetrics.COMMAND_LOAD, RemoteMediaClientAdapter.wrap(remoteMediaClient.load(mediaInfo, options)),
+                loadResultListener);
 
         return true;
     }
 
+    private static boolean onCallbacksOverflow(@Nullable LoadHandle handle) {
+        if (handle != null) handle.markFailed(new IllegalStateException("Too many callbacks registered on the RemoteMediaClient"));
+        return false;
+    }
+
+    private boolean canReuseCurrentMedia(MediaInfo mediaInfo) {
+        MediaStatus mediaStatus = remoteMediaClient.getMediaStatus();
+        if (mediaStatus == null || !isSameContent(mediaStatus.getMediaInfo(), mediaInfo)) return false;
+
+        int playerState = mediaStatus.getPlayerState();
+        return playerState == MediaStatus.PLAYER_STATE_PLAYING || playerState == MediaStatus.PLAYER_STATE_PAUSED
+                || playerState == MediaStatus.PLAYER_STATE_BUFFERING;
+    }
+
+    private void reuseCurrentMedia(boolean autoPlay, long position, double rate, boolean inBackground) {
+        MediaStatus mediaStatus = remoteMediaClient.getMediaStatus();
+        int playerState = mediaStatus.getPlayerState();
+        boolean commandSent = false;
+
+        if (position > 0 && Math.abs(mediaClient.getApproximateStreamPosition() - position) > REUSE_SEEK_TOLERANCE_MS) {
+            metrics.trackCommand(CasterMetrics.COMMAND_SEEK, mediaClient.seek(position), null);
+            commandSent = true;
+        }
+
+        if (rate != mediaStatus.getPlaybackRate()) {
+            metrics.trackCommand(CasterMetrics.COMMAND_SET_PLAYBACK_RATE, mediaClient.setPlaybackRate(rate), null);
+            commandSent = true;
+        }
+
+        if (autoPlay && playerState == MediaStatus.PLAYER_STATE_PAUSED) {
+            metrics.trackCommand(CasterMetrics.COMMAND_PLAY, mediaClient.play(), null);
+            commandSent = true;
+        }
+
+        // Listeners waiting for the media to play still need a status update
+        if (!commandSent) mediaClient.requestStatus();
+
+        if (!inBackground) onMediaLoadedListener.onMediaLoaded();
+    }
+
+    private static boolean isSameContent(@Nullable MediaInfo current, MediaInfo requested) {
+        return current != null
+                && TextUtils.equals(current.getContentId(), requested.getContentId())
+                && TextUtils.equals(current.getContentType(), requested.getContentType())
+                && current.getStreamType() == requested.getStreamType();
+    }
+
     private RemoteMediaClient.Callback createRemoteMediaClientListener() {
         return new RemoteMediaClient.Callback() {
             @Override
             public void onStatusUpdated() {
+                callbacks.unregister(this);
                 onMediaLoadedListener.onMediaLoaded();
-                remoteMediaClient.unregisterCallback(this);
             }
 
             @Override
@@ -251,7 +883,105 @@ public class CasterPlayer {
         };
     }
 
+    /**
+     * @return the id of the receiver's media session if it plays the given content, otherwise
+     * {@link #NO_MEDIA_SESSION}
+     */
+    private static long getMediaSessionId(@Nullable MediaStatus mediaStatus, @Nullable String contentId) {
+        if (mediaStatus == null || mediaStatus.getMediaInfo() == null) return NO_MEDIA_SESSION;
+        if (!TextUtils.equals(mediaStatus.getMediaInfo().getContentId(), contentId)) return NO_MEDIA_SESSION;
+
+        return mediaStatus.getMediaSessionId();
+    }
+
+    /**
+     * Tells a {@link LoadHandle} when the media it loaded starts playing, or when it fails. Only the
+     * statuses of that media count: the previous one may keep playing until the load is handled, or
+     * be interrupted by it, and the same content may already be playing in an older media session.
+     */
+    private final class FirstPlayingListener extends RemoteMediaClient.Callback implements CallbackRegistry.OnDroppedListener {
+        private final LoadHandle handle;
+        private final String contentId;
+        private long ignoredSessionId = NO_MEDIA_SESSION;
+        private long loadedSessionId = NO_MEDIA_SESSION;
+
+        FirstPlayingListener(LoadHandle handle, String contentId) {
+            this.handle = handle;
+            this.contentId = contentId;
+        }
+
+        void ignoreSession(long sessionId) {
+            ignoredSessionId = sessionId;
+        }
+
+        void onLoadResult(int statusCode, boolean success) {
+            if (!success) {
+                callbacks.unregister(this);
+                handle.markFailed(new Exception("The receiver rejected the load: "
+                        + CastStatusCodes.getStatusCodeString(statusCode)));
+                return;
+            }
+
+            // From now on, only the session created by the load counts
+            MediaStatus mediaStatus = remoteMediaClient != null ? remoteMediaClient.getMediaStatus() : null;
+            long sessionId = getMediaSessionId(mediaStatus, contentId);
+            if (sessionId != ignoredSessionId) loadedSessionId = sessionId;
+        }
+
+        private boolean isLoadedMedia(@Nullable MediaStatus mediaStatus) {
+            long sessionId = getMediaSessionId(mediaStatus, contentId);
+            if (sessionId == NO_MEDIA_SESSION) return false;
+
+            return loadedSessionId != NO_MEDIA_SESSION ? sessionId == loadedSessionId : sessionId != ignoredSessionId;
+        }
+
+        @Override
+        public void onStatusUpdated() {
+            if (remoteMediaClient == null || !isLoadedMedia(remoteMediaClient.getMediaStatus())) return;
+
+            // Registered after Caster's media listener, so the snapshot is already up to date
+            CasterStatus currentStatus = getStatus();
+
+            if (currentStatus.isPlaying()) {
+                callbacks.unregister(this);
+                handle.markPlaying();
+            } else if (currentStatus.getPlayerState() == MediaStatus.PLAYER_STATE_IDLE
+                    && currentStatus.getIdleReason() != MediaStatus.IDLE_REASON_NONE) {
+                // Whatever the reason, it won't play anymore
+                callbacks.unregister(this);
+                handle.markFailed(new Exception(currentStatus.getIdleReason() == MediaStatus.IDLE_REASON_ERROR
+                        ? "The receiver failed to play the media" : "Load interrupted before the media played"));
+            }
+        }
+
+        @Override
+        public void onDropped() {
+            handle.markFailed(new Exception("Load interrupted, the Cast session changed before the media played"));
+        }
+
+        @Override public void onMetadataUpdated() {}
+        @Override public void onQueueStatusUpdated() {}
+        @Override public void onPreloadStatusUpdated() {}
+        @Override public void onSendingRemoteMediaRequest() {}
+        @Override public void onAdBreakStatusUpdated() {}
+    }
+
     interface OnMediaLoadedListener {
         void onMediaLoaded();
     }
+
+    /**
+     * Supplies the items of a playlist played with {@link #loadWindowedQueue(PagingSource, int)}.
+     */
+    public interface PagingSource {
+        /**
+         * Loads up to {@code count} items of the playlist from {@code startIndex}. Fewer items, or none,
+         * mean the playlist ends there. The callback can be called later and from any thread.
+         */
+        void loadPage(int startIndex, int count, @NonNull PageCallback callback);
+    }
+
+    public interface PageCallback {
+        void onPageLoaded(@NonNull List<MediaData> mediaDataList);
+    }
 }
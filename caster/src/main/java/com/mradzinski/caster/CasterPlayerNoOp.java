@@ -3,6 +3,10 @@ package com.mradzinski.caster;
 import android.support.annotation.NonNull;
 import com.google.android.gms.cast.MediaInfo;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
 class CasterPlayerNoOp extends CasterPlayer {
     @Override
     public void play() {
@@ -19,6 +23,11 @@ class CasterPlayerNoOp extends CasterPlayer {
         //no-op
     }
 
+    @Override
+    public void setVolume(double volume) {
+        //no-op
+    }
+
     @Override
     public void togglePlayPause() {
         //no-op
@@ -68,4 +77,64 @@ class CasterPlayerNoOp extends CasterPlayer {
     public boolean loadMediaAndPlayInBackground(@NonNull MediaInfo mediaInfo, boolean autoPlay, long position, double rate) {
         return false;
     }
+
+    @Override
+    public boolean loadQueue(@NonNull List<MediaData> mediaDataList, int startIndex) {
+        return false;
+    }
+
+    @Override
+    public boolean loadQueueInBackground(@NonNull List<MediaData> mediaDataList, int startIndex) {
+        return false;
+    }
+
+    @Override
+    public boolean appendToQueue(@NonNull MediaData mediaData) {
+        return false;
+    }
+
+    @Override
+    public boolean appendToQueue(@NonNull List<MediaData> mediaDataList) {
+        return false;
+    }
+
+    @Override
+    public boolean updateQueue(@NonNull List<MediaData> mediaDataList) {
+        return false;
+    }
+
+    @Override
+    public boolean loadWindowedQueue(@NonNull PagingSource source, int startIndex) {
+        return false;
+    }
+
+    @Override
+    public boolean loadWindowedQueue(@NonNull PagingSource source, int startIndex, int windowSize) {
+        return false;
+    }
+
+    @Override
+    public boolean loadWindowedQueueInBackground(@NonNull PagingSource source, int startIndex, int windowSize) {
+        return false;
+    }
+
+    @Override
+    public void setAutoResume(boolean autoResume) {
+        //no-op
+    }
+
+    @Override
+    public LoadHandle loadMediaAndPlayAsync(@NonNull MediaData mediaData, @NonNull Executor executor) {
+        return LoadHandle.failed();
+    }
+
+    @Override
+    public LoadHandle loadMediaAndPlayAsync(@NonNull Callable<MediaData> mediaDataProvider, @NonNull Executor executor) {
+        return LoadHandle.failed();
+    }
+
+    @Override
+    public LoadHandle loadMediaAndPlayInBackgroundAsync(@NonNull Callable<MediaData> mediaDataProvider, @NonNull Executor executor) {
+        return LoadHandle.failed();
+    }
 }
@@ -0,0 +1,144 @@
+package com.mradzinski.caster;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.cast.framework.CastContext;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide state of the Cast framework initialization. The Google Play services check is
+ * done once per process, and {@link #start(Context)} moves it, together with building the
+ * CastOptions, off the main thread. The CastContext itself must be created on the main thread,
+ * so it's posted there once the rest is ready.
+ */
+final class CasterWarmUp {
+    private static final String TAG = "Caster";
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static volatile Boolean playServicesAvailable;
+
+    // Main thread only
+    private static CastContext castContext;
+    private static boolean started;
+    private static final List<Callback> pendingCallbacks = new ArrayList<>();
+
+    private CasterWarmUp() { /* no-op */ }
+
+    @MainThread
+    static void start(@NonNull final Context appContext) {
+        if (started || castContext != null) return;
+        started = true;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final boolean available = isPlayServicesAvailable(appContext);
+
+                if (available) {
+                    CastOptionsProvider.prepare();
+                } else {
+                    // The Caster objects created meanwhile are never attached
+                    Log.w(TAG, "Google Play services not found on a device, Caster won't work.");
+                }
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (available) initialize(appContext);
+                        finish();
+                    }
+                });
+            }
+        }, "Caster-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Checks, once per process, whether Google Play services is available.
+     */
+    static boolean isPlayServicesAvailable(@NonNull Context context) {
+        Boolean available = playServicesAvailable;
+
+        if (available == null) {
+            int state = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(context.getApplicationContext());
+            available = state == ConnectionResult.SUCCESS;
+            playServicesAvailable = available;
+        }
+
+        return available;
+    }
+
+    /**
+     * Same as {@link #isPlayServicesAvailable(Context)}, but never blocks while a warm-up is running:
+     * the warm-up does the check, and only attaches the Caster objects if it passes.
+     *
+     * @return false only if Google Play services is known to be unavailable
+     */
+    @MainThread
+    static boolean mayBePlayServicesAvailable(@NonNull Context context) {
+        if (started && playServicesAvailable == null) return true;
+
+        return isPlayServicesAvailable(context);
+    }
+
+    /**
+     * Runs the callback once the CastContext is ready: right away if it already is, when the
+     * warm-up is done if one is running, or after creating the CastContext now otherwise.
+     */
+    @MainThread
+    static void whenReady(@NonNull Context context, @NonNull Callback callback) {
+        if (castContext == null && started) {
+            pendingCallbacks.add(callback);
+            return;
+        }
+
+        if (castContext == null) initialize(context.getApplicationContext());
+        if (castContext != null) callback.onReady(castContext);
+    }
+
+    /**
+     * @return the CastContext if it's ready, null otherwise
+     */
+    @MainThread
+    @Nullable
+    static CastContext getIfReady() {
+        return castContext;
+    }
+
+    private static void initialize(Context appContext) {
+        try {
+            castContext = CastContext.getSharedInstance(appContext);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Couldn't initialize the CastContext, Caster won't work.", e);
+        }
+    }
+
+    private static void finish() {
+        started = false;
+
+        List<Callback> callbacks = new ArrayList<>(pendingCallbacks);
+        pendingCallbacks.clear();
+
+        if (castContext == null) return;
+
+        for (Callback callback : callbacks) {
+            callback.onReady(castContext);
+        }
+    }
+
+    interface Callback {
+        void onReady(@NonNull CastContext castContext);
+    }
+}
@@ -0,0 +1,155 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.cast.framework.CastSession;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Wrappers which deliver Caster's callbacks through a {@link DeliveryQueue} instead of calling the
+ * listener on the thread the event was produced on. The producing thread only pays for the hand-off.
+ */
+final class DeliveredListeners {
+    private DeliveredListeners() { /* no-op */ }
+
+    static final class ConnectChange implements Caster.OnConnectChangeListener, ListenerSet.Delegating {
+        private final Caster.OnConnectChangeListener delegate;
+        private final DeliveryQueue queue;
+
+        private final Runnable connected = new Runnable() {
+            @Override
+            public void run() {
+                delegate.onConnected();
+            }
+        };
+
+        private final Runnable disconnected = new Runnable() {
+            @Override
+            public void run() {
+                delegate.onDisconnected();
+            }
+        };
+
+        ConnectChange(Caster.OnConnectChangeListener delegate, Executor executor) {
+            this.delegate = delegate;
+            this.queue = new DeliveryQueue(executor, DeliveryQueue.DEFAULT_CAPACITY, null);
+        }
+
+        @Override public void onConnected() { queue.post(connected); }
+        @Override public void onDisconnected() { queue.post(disconnected); }
+        @Override public Object getDelegate() { return delegate; }
+    }
+
+    static final class SessionUpdated implements Caster.OnCastSessionUpdatedListener, ListenerSet.Delegating {
+        private final Caster.OnCastSessionUpdatedListener delegate;
+        private final DeliveryQueue queue;
+
+        SessionUpdated(Caster.OnCastSessionUpdatedListener delegate, Executor executor) {
+            this.delegate = delegate;
+            this.queue = new DeliveryQueue(executor, DeliveryQueue.DEFAULT_CAPACITY, null);
+        }
+
+        @Override
+        public void onCastSessionUpdated(@NonNull final CastSession castSession, final Boolean isConnected) {
+            queue.post(new Runnable() {
+                @Override
+                public void run() {
+                    delegate.onCastSessionUpdated(castSession, isConnected);
+                }
+            });
+        }
+
+        @Override public Object getDelegate() { return delegate; }
+    }
+
+    static final class StateChanged implements Caster.OnCastSessionStateChanged, ListenerSet.Delegating {
+        private final Caster.OnCastSessionStateChanged delegate;
+        private final DeliveryQueue queue;
+
+        private final Runnable began = new Runnable() {
+            @Override
+            public void run() {
+                delegate.onCastSessionBegan();
+            }
+        };
+
+        private final Runnable finished = new Runnable() {
+            @Override
+            public void run() {
+                delegate.onCastSessionFinished();
+            }
+        };
+
+        private final Runnable playing = new Runnable() {
+            @Override
+            public void run() {
+                delegate.onCastSessionPlaying();
+            }
+        };
+
+        private final Runnable paused = new Runnable() {
+            @Override
+            public void run() {
+                delegate.onCastSessionPaused();
+            }
+        };
+
+        StateChanged(Caster.OnCastSessionStateChanged delegate, Executor executor) {
+            this.delegate = delegate;
+            this.queue = new DeliveryQueue(executor, DeliveryQueue.DEFAULT_CAPACITY, null);
+        }
+
+        @Override public void onCastSessionBegan() { queue.post(began); }
+        @Override public void onCastSessionFinished() { queue.post(finished); }
+        @Override public void onCastSessionPlaying() { queue.post(playing); }
+        @Override public void onCastSessionPaused() { queue.post(paused); }
+        @Override public Object getDelegate() { return delegate; }
+    }
+
+    static final class QueueStatus implements Caster.OnCastQueueStatusListener, ListenerSet.Delegating {
+        private final Caster.OnCastQueueStatusListener delegate;
+        private final DeliveryQueue queue;
+
+        QueueStatus(Caster.OnCastQueueStatusListener delegate, Executor executor) {
+            this.delegate = delegate;
+            this.queue = new DeliveryQueue(executor, DeliveryQueue.DEFAULT_CAPACITY, null);
+        }
+
+        @Override
+        public void onQueueStatusUpdated(final int currentItemIndex, final int itemCount) {
+            queue.post(new Runnable() {
+                @Override
+                public void run() {
+                    delegate.onQueueStatusUpdated(currentItemIndex, itemCount);
+                }
+            });
+        }
+
+        @Override
+        public void onPreloadStatusUpdated(@Nullable final String preloadedMediaUrl) {
+            queue.post(new Runnable() {
+                @Override
+                public void run() {
+                    delegate.onPreloadStatusUpdated(preloadedMediaUrl);
+                }
+            });
+        }
+
+        @Override public Object getDelegate() { return delegate; }
+    }
+
+    static final class ProgressUpdate implements Caster.OnCastSessionProgressUpdateListener, ListenerSet.Delegating {
+        private final Caster.OnCastSessionProgressUpdateListener delegate;
+        private final DeliveryQueue queue;
+
+        ProgressUpdate(Caster.OnCastSessionProgressUpdateListener delegate, Executor executor) {
+            this.delegate = delegate;
+            this.queue = new DeliveryQueue(executor, DeliveryQueue.DEFAULT_CAPACITY, delegate);
+        }
+
+        @Override public void onProgressUpdated(long progressMs, long durationMs) { queue.postProgress(progressMs, durationMs); }
+        @Override public Object getDelegate() { return delegate; }
+    }
+}
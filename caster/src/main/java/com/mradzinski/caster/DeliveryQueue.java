@@ -0,0 +1,98 @@
+package com.mradzinski.caster;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Queue which hands events off to an {@link Executor} and runs them one at a time, in order. Every
+ * event is delivered, the queue grows as long as the listener is behind. Progress ticks are the only
+ * exception, they're conflated: only the latest one which wasn't delivered yet is kept, so they never
+ * make the queue grow.
+ */
+final class DeliveryQueue implements Runnable {
+    static final int DEFAULT_CAPACITY = 16;
+
+    private final Executor executor;
+    private final ArrayDeque<Runnable> events;
+
+    private final Caster.OnCastSessionProgressUpdateListener progressListener;
+    private boolean hasProgress = false;
+    private long progressMs;
+    private long durationMs;
+
+    private boolean scheduled = false;
+    private long conflatedCount = 0;
+
+    /**
+     * @param capacity the number of events the queue holds before growing
+     */
+    DeliveryQueue(Executor executor, int capacity, Caster.OnCastSessionProgressUpdateListener progressListener) {
+        this.executor = executor;
+        this.events = new ArrayDeque<>(capacity);
+        this.progressListener = progressListener;
+    }
+
+    void post(Runnable event) {
+        synchronized (this) {
+            events.addLast(event);
+            if (scheduled) return;
+            scheduled = true;
+        }
+
+        executor.execute(this);
+    }
+
+    void postProgress(long progressMs, long durationMs) {
+        synchronized (this) {
+            if (hasProgress) conflatedCount++;
+
+            this.progressMs = progressMs;
+            this.durationMs = durationMs;
+            this.hasProgress = true;
+
+            if (scheduled) return;
+            scheduled = true;
+        }
+
+        executor.execute(this);
+    }
+
+    /**
+     * @return the number of progress ticks replaced by a later one before being delivered
+     */
+    synchronized long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Runnable event;
+            boolean deliverProgress = false;
+            long progress = 0;
+            long duration = 0;
+
+            synchronized (this) {
+                event = events.pollFirst();
+
+                if (event == null) {
+                    if (hasProgress) {
+                        deliverProgress = true;
+                        progress = progressMs;
+                        duration = durationMs;
+                        hasProgress = false;
+                    } else {
+                        scheduled = false;
+                        return;
+                    }
+                }
+            }
+
+            if (event != null) {
+                event.run();
+            } else if (deliverProgress) {
+                progressListener.onProgressUpdated(progress, duration);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.MainThread;
+import android.view.Choreographer;
+
+/**
+ * Delivers an interpolated progress to its listeners on every {@link Choreographer} frame while the
+ * media plays, so seekbars move smoothly without frequent progress updates from the receiver. The
+ * interpolation is anchored to every status update and to the real progress updates, which only
+ * need to come every {@link #RESYNC_INTERVAL_MS}.
+ *
+ * <p>Must be used on the main thread.</p>
+ */
+@MainThread
+final class FrameProgressDispatcher implements Choreographer.FrameCallback {
+    static final long RESYNC_INTERVAL_MS = 5000L;
+
+    private final Clock clock;
+    private final ProgressInterpolator interpolator = new ProgressInterpolator();
+    private final ListenerSet<MediaClient.ProgressListener> listeners = new ListenerSet<>();
+
+    private boolean frameScheduled = false;
+    private long lastPosition = -1;
+    private long lastDuration = CasterStatus.UNKNOWN_DURATION;
+
+    FrameProgressDispatcher(Clock clock) {
+        this.clock = clock;
+    }
+
+    ListenerSet<MediaClient.ProgressListener> getListeners() {
+        return listeners;
+    }
+
+    void onStatusUpdated(CasterStatus status) {
+        interpolator.update(status);
+        if (listeners.isEmpty()) return;
+
+        deliver();
+        scheduleFrame();
+    }
+
+    void onProgressUpdated(long progressMs, long durationMs) {
+        interpolator.update(progressMs, durationMs, clock.now());
+    }
+
+    /**
+     * Delivers the current position right away and starts or stops the frame callbacks as needed.
+     */
+    void onListenersChanged() {
+        lastPosition = -1;
+
+        if (listeners.isEmpty()) {
+            cancelFrame();
+            return;
+        }
+
+        deliver();
+        scheduleFrame();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (listeners.isEmpty()) return;
+
+        deliver();
+        scheduleFrame();
+    }
+
+    private void deliver() {
+        long position = interpolator.getPosition(clock.now());
+        long duration = interpolator.getDuration();
+
+        // A paused media doesn't move, listeners only need to hear about it once
+        if (position == lastPosition && duration == lastDuration) return;
+
+        lastPosition = position;
+        lastDuration = duration;
+
+        for (Object listener : listeners.getListeners()) {
+            ((MediaClient.ProgressListener) listener).onProgressUpdated(position, duration);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled || !interpolator.isPlaying()) return;
+
+        Choreographer.getInstance().postFrameCallback(this);
+        frameScheduled = true;
+    }
+
+    private void cancelFrame() {
+        if (!frameScheduled) return;
+
+        Choreographer.getInstance().removeFrameCallback(this);
+        frameScheduled = false;
+    }
+}
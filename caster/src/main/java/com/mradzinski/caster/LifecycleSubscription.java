@@ -0,0 +1,39 @@
+package com.mradzinski.caster;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+
+/**
+ * Removes a listener from its {@link ListenerSet} once the {@link LifecycleOwner} it was added
+ * with is destroyed.
+ */
+final class LifecycleSubscription<T> implements LifecycleObserver {
+    private final LifecycleOwner owner;
+    private final ListenerSet<T> listenerSet;
+    private final T listener;
+    private final Runnable onRemoved;
+
+    private LifecycleSubscription(LifecycleOwner owner, ListenerSet<T> listenerSet, T listener, Runnable onRemoved) {
+        this.owner = owner;
+        this.listenerSet = listenerSet;
+        this.listener = listener;
+        this.onRemoved = onRemoved;
+    }
+
+    static <T> void bind(LifecycleOwner owner, ListenerSet<T> listenerSet, T listener, Runnable onRemoved) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) return;
+
+        if (listenerSet.add(listener)) {
+            owner.getLifecycle().addObserver(new LifecycleSubscription<>(owner, listenerSet, listener, onRemoved));
+        }
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    public void onDestroy() {
+        owner.getLifecycle().removeObserver(this);
+
+        if (listenerSet.remove(listener) && onRemoved != null) onRemoved.run();
+    }
+}
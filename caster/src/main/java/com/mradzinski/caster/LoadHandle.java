@@ -0,0 +1,145 @@
+package com.mradzinski.caster;
+
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle of a media load started with {@link CasterPlayer#loadMediaAndPlayAsync}. It allows to cancel
+ * the load while the media is still being prepared and tells when the load was sent and when the
+ * receiver started playing it.
+ */
+@SuppressWarnings("WeakerAccess")
+public class LoadHandle {
+    public static final long NOT_YET = -1L;
+
+    private static final int STATE_PREPARING = 0;
+    private static final int STATE_SENT = 1;
+    private static final int STATE_CANCELLED = 2;
+    private static final int STATE_FAILED = 3;
+
+    private final AtomicInteger state = new AtomicInteger(STATE_PREPARING);
+    private final long createdAt;
+    private volatile long loadSentAt = NOT_YET;
+    private volatile long firstPlayingAt = NOT_YET;
+    private volatile Throwable error;
+    private Listener listener;
+
+    LoadHandle() {
+        createdAt = SystemClock.elapsedRealtime();
+    }
+
+    static LoadHandle failed() {
+        LoadHandle handle = new LoadHandle();
+        handle.state.set(STATE_FAILED);
+        return handle;
+    }
+
+    /**
+     * Cancels the load. It only has effect while the media is still being prepared, once the load
+     * was sent to the receiver it can't be cancelled anymore.
+     *
+     * @return true if the load was cancelled, false if it was already sent or failed
+     */
+    public boolean cancel() {
+        return state.compareAndSet(STATE_PREPARING, STATE_CANCELLED);
+    }
+
+    public boolean isCancelled() {
+        return state.get() == STATE_CANCELLED;
+    }
+
+    public boolean isLoadSent() {
+        return state.get() == STATE_SENT;
+    }
+
+    public boolean isFailed() {
+        return state.get() == STATE_FAILED;
+    }
+
+    /**
+     * @return the error thrown while preparing the media, or the reason the receiver rejected or
+     * failed to play it, if any
+     */
+    public @Nullable Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return the {@link SystemClock#elapsedRealtime()} at which the load was sent to the receiver
+     * or {@link #NOT_YET}
+     */
+    public long getLoadSentAt() {
+        return loadSentAt;
+    }
+
+    /**
+     * @return the {@link SystemClock#elapsedRealtime()} at which the receiver was first seen playing
+     * the media or {@link #NOT_YET}
+     */
+    public long getFirstPlayingAt() {
+        return firstPlayingAt;
+    }
+
+    /**
+     * @return milliseconds between the creation of this handle and the first time the receiver
+     * was seen playing the media, or {@link #NOT_YET}
+     */
+    public long getTimeToFirstPlaying() {
+        long playingAt = firstPlayingAt;
+        return playingAt == NOT_YET ? NOT_YET : playingAt - createdAt;
+    }
+
+    /**
+     * Sets a {@link Listener}, which is called on the main thread. Events which already happened
+     * are delivered right away.
+     *
+     * @param listener An instance of {@link Listener}
+     */
+    @MainThread
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+        if (listener == null) return;
+
+        if (loadSentAt != NOT_YET) listener.onLoadSent(loadSentAt);
+        if (firstPlayingAt != NOT_YET) listener.onFirstPlaying(firstPlayingAt);
+        if (isFailed()) listener.onLoadFailed(error);
+    }
+
+    @MainThread
+    boolean markSent() {
+        if (!state.compareAndSet(STATE_PREPARING, STATE_SENT)) return false;
+
+        loadSentAt = SystemClock.elapsedRealtime();
+        if (listener != null) listener.onLoadSent(loadSentAt);
+        return true;
+    }
+
+    @MainThread
+    void markPlaying() {
+        if (firstPlayingAt != NOT_YET) return;
+
+        firstPlayingAt = SystemClock.elapsedRealtime();
+        if (listener != null) listener.onFirstPlaying(firstPlayingAt);
+    }
+
+    /**
+     * Fails the load while the media is prepared, or once it was sent and before it played.
+     */
+    @MainThread
+    void markFailed(@Nullable Throwable error) {
+        if (firstPlayingAt != NOT_YET) return;
+        if (!state.compareAndSet(STATE_PREPARING, STATE_FAILED) && !state.compareAndSet(STATE_SENT, STATE_FAILED)) return;
+
+        this.error = error;
+        if (listener != null) listener.onLoadFailed(error);
+    }
+
+    public interface Listener {
+        void onLoadSent(long loadSentAt);
+        void onFirstPlaying(long firstPlayingAt);
+        void onLoadFailed(@Nullable Throwable error);
+    }
+}
@@ -2,20 +2,25 @@ package com.mradzinski.caster;
 
 import android.net.Uri;
 import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import com.google.android.gms.cast.MediaInfo;
 import com.google.android.gms.cast.MediaMetadata;
+import com.google.android.gms.cast.MediaQueueItem;
 import com.google.android.gms.common.images.WebImage;
+import org.json.JSONObject;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Media information class
+ * Media information class. Instances are immutable, derived copies are made with {@link #toBuilder()}.
+ * They're kept compact for large catalogs: content types are pooled and image URLs are packed in a
+ * single string.
  */
 @SuppressWarnings("WeakerAccess")
-public class MediaData {
+public final class MediaData {
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({STREAM_TYPE_NONE, STREAM_TYPE_BUFFERED, STREAM_TYPE_LIVE})
     public @interface StreamType {}
@@ -42,61 +47,91 @@ public class MediaData {
     public static final double PLAYBACK_RATE_FAST = 1.5;
     public static final double PLAYBACK_RATE_FASTEST = 2.0;
 
-    private String url;
-    private int streamType = STREAM_TYPE_NONE;
-    private String contentType = "application/x-mpegURL";
-    private long streamDuration = UNKNOWN_DURATION;
-    private int mediaType = MEDIA_TYPE_GENERIC;
-    private String title;
-    private String subtitle;
-    private boolean autoPlay = true;
-    private long position;
-    private List<String> imageUrls;
-    private double playbackRate = PLAYBACK_RATE_NORMAL;
+    public static final double DEFAULT_PRELOAD_TIME = 20.0;
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/x-mpegURL";
+    // Content types are few, the bound only guards against apps passing arbitrary strings
+    private static final StringPool CONTENT_TYPES = new StringPool(256);
+
+    // Ordered from the widest fields to the narrowest, which packs them best on most VMs
+    private final long streamDuration;
+    private final long position;
+    private final double playbackRate;
+    private final double preloadTime;
+    private final String url;
+    private final String contentType;
+    private final String title;
+    private final String subtitle;
+    // Packed by PackedStrings, null if there's none
+    private final String imageUrls;
+    private final int mediaType;
+    private final byte streamType;
+    private final boolean autoPlay;
 
     /* ********************************************
      *              End of variables              *
      ******************************************** */
 
-    private MediaData(String url) {
-        this.url = url;
-        imageUrls = new ArrayList<>();
+    private MediaData(Builder builder) {
+        streamDuration = builder.streamDuration;
+        position = builder.position;
+        playbackRate = builder.playbackRate;
+        preloadTime = builder.preloadTime;
+        url = builder.url;
+        contentType = CONTENT_TYPES.get(builder.contentType);
+        title = builder.title;
+        subtitle = builder.subtitle;
+        imageUrls = builder.imageUrls;
+        mediaType = builder.mediaType;
+        streamType = (byte) builder.streamType;
+        autoPlay = builder.autoPlay;
     }
 
-    private void setStreamType(int streamType) {
-        this.streamType = streamType;
+    /**
+     * @return a builder initialized with this media's information, to make a modified copy. It's cheap,
+     * the strings are shared.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
     }
 
-    private void setContentType(String contentType) {
-        this.contentType = contentType;
+    public String getUrl() {
+        return url;
     }
 
-    private void setStreamDuration(long streamDuration) {
-        this.streamDuration = streamDuration;
+    public @StreamType int getStreamType() {
+        return streamType;
     }
 
-    private void setTitle(String title) {
-        this.title = title;
+    public String getContentType() {
+        return contentType;
     }
 
-    private void setSubtitle(String subtitle) {
-        this.subtitle = subtitle;
+    public long getStreamDuration() {
+        return streamDuration;
     }
 
-    private void setMediaType(int mediaType) {
-        this.mediaType = mediaType;
+    public @MediaType int getMediaType() {
+        return mediaType;
     }
 
-    private void setAutoPlay(boolean autoPlay) {
-        this.autoPlay = autoPlay;
+    public String getTitle() {
+        return title;
     }
 
-    public boolean isAutoPlay() {
-        return autoPlay;
+    public String getDescription() {
+        return subtitle;
+    }
+
+    /**
+     * @return the thumbnail URLs, in the order they were added
+     */
+    public List<String> getThumbnailUrls() {
+        return PackedStrings.unpack(imageUrls);
     }
 
-    private void setPosition(long position) {
-        this.position = position;
+    public boolean isAutoPlay() {
+        return autoPlay;
     }
 
     public long getPosition() {
@@ -107,8 +142,8 @@ public class MediaData {
         return playbackRate;
     }
 
-    public void setPlaybackRate(double playbackRate) {
-        this.playbackRate = playbackRate;
+    public double getPreloadTime() {
+        return preloadTime;
     }
 
     MediaInfo createMediaInfo() {
@@ -117,7 +152,7 @@ public class MediaData {
         if (!TextUtils.isEmpty(title)) mediaMetadata.putString(MediaMetadata.KEY_TITLE, title);
         if (!TextUtils.isEmpty(subtitle)) mediaMetadata.putString(MediaMetadata.KEY_SUBTITLE, subtitle);
 
-        for (String imageUrl : imageUrls) {
+        for (String imageUrl : PackedStrings.unpack(imageUrls)) {
             mediaMetadata.addImage(new WebImage(Uri.parse(imageUrl)));
         }
 
@@ -129,15 +164,113 @@ public class MediaData {
                 .build();
     }
 
+    /**
+     * @return true if both media build the same {@link MediaInfo}, whatever their load options
+     */
+    boolean hasSameMediaInfo(@NonNull MediaData other) {
+        return this == other || (streamDuration == other.streamDuration
+                && mediaType == other.mediaType
+                && streamType == other.streamType
+                && TextUtils.equals(url, other.url)
+                && TextUtils.equals(contentType, other.contentType)
+                && TextUtils.equals(title, other.title)
+                && TextUtils.equals(subtitle, other.subtitle)
+                && TextUtils.equals(imageUrls, other.imageUrls));
+    }
+
+    int getMediaInfoHashCode() {
+        int result = url != null ? url.hashCode() : 0;
+        result = 31 * result + (title != null ? title.hashCode() : 0);
+        result = 31 * result + (imageUrls != null ? imageUrls.hashCode() : 0);
+        result = 31 * result + (int) (streamDuration ^ (streamDuration >>> 32));
+        return result;
+    }
+
+    MediaQueueItem createMediaQueueItem(@NonNull MediaInfo mediaInfo, @Nullable JSONObject customData) {
+        return new MediaQueueItem.Builder(mediaInfo)
+                .setAutoplay(autoPlay)
+                .setStartTime(position / 1000d)
+                .setPreloadTime(preloadTime)
+                .setCustomData(customData)
+                .build();
+    }
+
+    /**
+     * @return a key of everything which can't be changed on an item already queued on the receiver
+     */
+    String getQueueKey() {
+        return createQueueKey(url, contentType, streamType, title, subtitle);
+    }
+
+    static String getQueueKey(@Nullable MediaInfo mediaInfo) {
+        if (mediaInfo == null) return "";
+
+        MediaMetadata mediaMetadata = mediaInfo.getMetadata();
+
+        return createQueueKey(mediaInfo.getContentId(), mediaInfo.getContentType(), mediaInfo.getStreamType(),
+                mediaMetadata != null ? mediaMetadata.getString(MediaMetadata.KEY_TITLE) : null,
+                mediaMetadata != null ? mediaMetadata.getString(MediaMetadata.KEY_SUBTITLE) : null);
+    }
+
+    private static String createQueueKey(String url, String contentType, int streamType, String title, String subtitle) {
+        // Empty titles aren't sent, so they're the same as missing ones
+        return url + '\n' + contentType + '\n' + streamType
+                + '\n' + (TextUtils.isEmpty(title) ? "" : title)
+                + '\n' + (TextUtils.isEmpty(subtitle) ? "" : subtitle);
+    }
+
+    /**
+     * @return true if the queued item already plays this media the way it should
+     */
+    boolean hasSameQueueSettings(@NonNull MediaQueueItem mediaQueueItem) {
+        return mediaQueueItem.getAutoplay() == autoPlay
+                && mediaQueueItem.getStartTime() == position / 1000d
+                && mediaQueueItem.getPreloadTime() == preloadTime;
+    }
+
+    MediaQueueItem updateMediaQueueItem(@NonNull MediaQueueItem mediaQueueItem) {
+        return new MediaQueueItem.Builder(mediaQueueItem)
+                .setAutoplay(autoPlay)
+                .setStartTime(position / 1000d)
+                .setPreloadTime(preloadTime)
+                .build();
+    }
+
     public static class Builder {
-        private final MediaData mediaData;
+        private final String url;
+        private int streamType = STREAM_TYPE_NONE;
+        private String contentType = DEFAULT_CONTENT_TYPE;
+        private long streamDuration = UNKNOWN_DURATION;
+        private int mediaType = MEDIA_TYPE_GENERIC;
+        private String title;
+        private String subtitle;
+        private boolean autoPlay = true;
+        private long position;
+        private String imageUrls;
+        private double playbackRate = PLAYBACK_RATE_NORMAL;
+        private double preloadTime = DEFAULT_PRELOAD_TIME;
 
         /**
          * Create the MediaData builder.
          * @param url String url of media data
          */
         public Builder(String url) {
-            mediaData = new MediaData(url);
+            this.url = url;
+        }
+
+        private Builder(MediaData mediaData) {
+            url = mediaData.url;
+            streamType = mediaData.streamType;
+            contentType = mediaData.contentType;
+            streamDuration = mediaData.streamDuration;
+            mediaType = mediaData.mediaType;
+            title = mediaData.title;
+            subtitle = mediaData.subtitle;
+            autoPlay = mediaData.autoPlay;
+            position = mediaData.position;
+            imageUrls = mediaData.imageUrls;
+            playbackRate = mediaData.playbackRate;
+            preloadTime = mediaData.preloadTime;
         }
 
         /**
@@ -146,7 +279,7 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setStreamType(@StreamType int streamType) {
-            mediaData.setStreamType(streamType);
+            this.streamType = streamType;
             return this;
         }
 
@@ -156,7 +289,7 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setContentType(String contentType) {
-            mediaData.setContentType(contentType);
+            this.contentType = contentType;
             return this;
         }
 
@@ -166,7 +299,7 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setStreamDuration(long streamDuration) {
-            mediaData.setStreamDuration(streamDuration);
+            this.streamDuration = streamDuration;
             return this;
         }
 
@@ -176,7 +309,7 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setTitle(String title) {
-            mediaData.setTitle(title);
+            this.title = title;
             return this;
         }
 
@@ -186,7 +319,7 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setDescription(String description) {
-            mediaData.setSubtitle(description);
+            this.subtitle = description;
             return this;
         }
 
@@ -197,17 +330,26 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setMediaType(@MediaType int mediaType) {
-            mediaData.setMediaType(mediaType);
+            this.mediaType = mediaType;
             return this;
         }
 
         /**
-         * Sets the thumbnail URL.
+         * Adds a thumbnail URL.
          * @param url valid url to a JPEG or PNG image.
          * @return this instance for chain calls
          */
         public Builder setThumbnailUrl(String url) {
-            mediaData.imageUrls.add(url);
+            if (url != null) imageUrls = PackedStrings.append(imageUrls, url);
+            return this;
+        }
+
+        /**
+         * Removes the thumbnail URLs added so far, e.g. to replace those of a copied media.
+         * @return this instance for chain calls
+         */
+        public Builder clearThumbnailUrls() {
+            imageUrls = null;
             return this;
         }
 
@@ -217,7 +359,7 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setAutoPlay(boolean autoPlay) {
-            mediaData.setAutoPlay(autoPlay);
+            this.autoPlay = autoPlay;
             return this;
         }
 
@@ -227,7 +369,7 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setPosition(long position) {
-            mediaData.setPosition(position);
+            this.position = position;
             return this;
         }
 
@@ -238,12 +380,27 @@ public class MediaData {
          * @return this instance for chain calls
          */
         public Builder setPlaybackRate(double rate) {
-            mediaData.setPlaybackRate(rate);
+            this.playbackRate = rate;
+            return this;
+        }
+
+        /**
+         * Sets how many seconds before the end of the previous queue item the receiver should start
+         * preloading this one. Only used when the media is loaded as part of a queue.
+         * Defaults to DEFAULT_PRELOAD_TIME (20 seconds)
+         * @param preloadTime Preload time in seconds, 0 to disable preloading
+         * @return this instance for chain calls
+         */
+        public Builder setPreloadTime(double preloadTime) {
+            this.preloadTime = preloadTime;
             return this;
         }
 
+        /**
+         * @return a new MediaData, later changes to this builder don't affect it
+         */
         public MediaData build() {
-            return this.mediaData;
+            return new MediaData(this);
         }
     }
 }
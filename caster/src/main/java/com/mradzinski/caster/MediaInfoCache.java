@@ -0,0 +1,100 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.cast.MediaInfo;
+
+/**
+ * Cache of the {@link MediaInfo}s built from {@link MediaData}, so a media loaded again, e.g. from
+ * the history or on a retry, isn't built again. Media are matched by what their MediaInfo holds:
+ * URL, stream and content type, duration, media type, title, description and thumbnails. Their
+ * position, playback rate and other load options don't matter.
+ *
+ * <p>It keeps the {@link #DEFAULT_MAX_SIZE} most recently used MediaInfos by default.</p>
+ */
+@AnyThread
+@SuppressWarnings("WeakerAccess")
+public final class MediaInfoCache {
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private final LruCache<Key, MediaInfo> cache = new LruCache<>(DEFAULT_MAX_SIZE);
+
+    MediaInfoCache() {
+        //no-op
+    }
+
+    @NonNull MediaInfo get(@NonNull MediaData mediaData) {
+        Key key = new Key(mediaData);
+        MediaInfo mediaInfo = cache.get(key);
+
+        if (mediaInfo == null) {
+            mediaInfo = mediaData.createMediaInfo();
+            cache.put(key, mediaInfo);
+        }
+
+        return mediaInfo;
+    }
+
+    /**
+     * Sets how many MediaInfos are kept, the least recently used ones are evicted first.
+     *
+     * @param maxSize the maximum number of MediaInfos, 0 to disable the cache
+     */
+    public void setMaxSize(int maxSize) {
+        cache.setMaxSize(maxSize);
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    /**
+     * Drops the MediaInfo built from the given media, or from any media with the same content.
+     *
+     * @return true if there was one
+     */
+    public boolean invalidate(@NonNull MediaData mediaData) {
+        return cache.remove(new Key(mediaData));
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    private static final class Key {
+        private final MediaData mediaData;
+        private final int hashCode;
+
+        Key(MediaData mediaData) {
+            this.mediaData = mediaData;
+            this.hashCode = mediaData.getMediaInfoHashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && mediaData.hasSameMediaInfo(((Key) other).mediaData);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
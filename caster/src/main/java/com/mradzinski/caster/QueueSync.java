@@ -0,0 +1,192 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import com.google.android.gms.common.api.PendingResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings the queue loaded on the receiver to a wanted list of media with the fewest requests: one
+ * removal, then an insert or a reorder per {@link QueueDiff.Block}, then one update of the items
+ * whose autoplay, start or preload time changed. Nothing is reloaded, so the item playing goes on
+ * unless it's removed from the queue.
+ *
+ * <p>The receiver's queue, mirrored in its {@link MediaStatus}, is only up to date once the requests
+ * are answered. A list wanted meanwhile waits for them and is then diffed against the new queue.</p>
+ */
+@MainThread
+final class QueueSync {
+    private final CasterMetrics metrics;
+    private final MediaInfoCache mediaInfoCache;
+
+    private RemoteMediaClient remoteMediaClient;
+    private int generation = 0;
+    private int pendingRequests = 0;
+    private List<MediaData> pendingQueue;
+
+    QueueSync(CasterMetrics metrics, MediaInfoCache mediaInfoCache) {
+        this.metrics = metrics;
+        this.mediaInfoCache = mediaInfoCache;
+    }
+
+    void setRemoteMediaClient(@Nullable RemoteMediaClient remoteMediaClient) {
+        this.remoteMediaClient = remoteMediaClient;
+
+        // Results of the previous client don't tell anything about the new one
+        generation++;
+        pendingRequests = 0;
+        pendingQueue = null;
+    }
+
+    /**
+     * @return true if there's a queue on the receiver, false if it has to be loaded
+     */
+    boolean hasQueue() {
+        if (remoteMediaClient == null) return false;
+
+        MediaStatus mediaStatus = remoteMediaClient.getMediaStatus();
+        return mediaStatus != null && mediaStatus.getQueueItemCount() > 0;
+    }
+
+    /**
+     * @return the number of requests sent, 0 if the queue was already the wanted one or if it will
+     * be synced once the requests in flight are answered
+     */
+    int sync(@NonNull List<MediaData> mediaDataList) {
+        if (!hasQueue()) return 0;
+
+        if (pendingRequests > 0) {
+            pendingQueue = new ArrayList<>(mediaDataList);
+            return 0;
+        }
+
+        MediaStatus mediaStatus = remoteMediaClient.getMediaStatus();
+        List<MediaQueueItem> queueItems = mediaStatus.getQueueItems();
+        int currentItemId = mediaStatus.getCurrentItemId();
+
+        List<String> wantedKeys = new ArrayList<>(mediaDataList.size());
+        for (MediaData mediaData : mediaDataList) {
+            wantedKeys.add(mediaData.getQueueKey());
+        }
+
+        List<String> currentKeys = new ArrayList<>(queueItems.size());
+        for (MediaQueueItem queueItem : queueItems) {
+            String key = MediaData.getQueueKey(queueItem.getMedia());
+
+            // The playing item is kept even if its title changed, replacing it would restart it
+            if (queueItem.getItemId() == currentItemId) key = findSameContent(key, wantedKeys);
+
+            currentKeys.add(key);
+        }
+
+        QueueDiff diff = QueueDiff.compute(currentKeys, wantedKeys);
+        int sent = 0;
+
+        int[] removed = diff.getRemoved();
+        if (removed.length > 0) {
+            int[] itemIds = new int[removed.length];
+
+            for (int i = 0; i < removed.length; i++) {
+                itemIds[i] = queueItems.get(removed[i]).getItemId();
+            }
+
+            sent += send(CasterMetrics.COMMAND_QUEUE_REMOVE, remoteMediaClient.queueRemoveItems(itemIds, null));
+        }
+
+        for (QueueDiff.Block block : diff.getBlocks()) {
+            int beforeItemId = block.anchor == QueueDiff.END ? MediaQueueItem.INVALID_ITEM_ID
+                    : queueItems.get(diff.getMatch(block.anchor)).getItemId();
+
+            if (block.insert) {
+                MediaQueueItem[] items = new MediaQueueItem[block.end - block.start];
+
+                for (int i = block.start; i < block.end; i++) {
+                    MediaData mediaData = mediaDataList.get(i);
+                    items[i - block.start] = mediaData.createMediaQueueItem(mediaInfoCache.get(mediaData), null);
+                }
+
+                sent += send(CasterMetrics.COMMAND_QUEUE_INSERT,
+                        remoteMediaClient.queueInsertItems(items, beforeItemId, null));
+            } else {
+                int[] itemIds = new int[block.end - block.start];
+
+                for (int i = block.start; i < block.end; i++) {
+                    itemIds[i - block.start] = queueItems.get(diff.getMatch(i)).getItemId();
+                }
+
+                sent += send(CasterMetrics.COMMAND_QUEUE_REORDER,
+                        remoteMediaClient.queueReorderItems(itemIds, beforeItemId, null));
+            }
+        }
+
+        List<MediaQueueItem> updatedItems = new ArrayList<>();
+        for (int i = 0; i < mediaDataList.size(); i++) {
+            int match = diff.getMatch(i);
+            if (match == QueueDiff.NO_MATCH) continue;
+
+            MediaQueueItem queueItem = queueItems.get(match);
+            MediaData mediaData = mediaDataList.get(i);
+
+            if (queueItem.getItemId() != currentItemId && !mediaData.hasSameQueueSettings(queueItem)) {
+                updatedItems.add(mediaData.updateMediaQueueItem(queueItem));
+            }
+        }
+
+        if (!updatedItems.isEmpty()) {
+            sent += send(CasterMetrics.COMMAND_QUEUE_UPDATE, remoteMediaClient.queueUpdateItems(
+                    updatedItems.toArray(new MediaQueueItem[updatedItems.size()]), null));
+        }
+
+        return sent;
+    }
+
+    private static String findSameContent(String key, List<String> wantedKeys) {
+        String contentId = key.substring(0, key.indexOf('\n') + 1);
+
+        for (String wantedKey : wantedKeys) {
+            if (wantedKey.startsWith(contentId)) return wantedKey;
+        }
+
+        return key;
+    }
+
+    private int send(@CasterMetrics.Command int command,
+                     @Nullable PendingResult<RemoteMediaClient.MediaChannelResult> pendingResult) {
+        MediaClient.PendingCommand pendingCommand = RemoteMediaClientAdapter.wrap(pendingResult);
+        if (pendingCommand == null) return 0;
+
+        pendingRequests++;
+        metrics.trackCommand(command, pendingCommand, new RequestListener(generation));
+
+        return 1;
+    }
+
+    private void onRequestDone() {
+        if (--pendingRequests > 0 || pendingQueue == null) return;
+
+        List<MediaData> mediaDataList = pendingQueue;
+        pendingQueue = null;
+        sync(mediaDataList);
+    }
+
+    private final class RequestListener implements MediaClient.ResultListener {
+        private final int generation;
+
+        RequestListener(int generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onResult(int statusCode, boolean success) {
+            // Failed requests need nothing special, the next sync starts from the actual queue
+            if (generation == QueueSync.this.generation) onRequestDone();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.mradzinski.caster;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link MediaClient} backed by a {@link RemoteMediaClient}.
+ */
+final class RemoteMediaClientAdapter implements MediaClient {
+    private final RemoteMediaClient remoteMediaClient;
+    private final Map<Listener, RemoteMediaClient.Callback> callbacks = new HashMap<>();
+    private final Map<ProgressListener, RemoteMediaClient.ProgressListener> progressListeners = new HashMap<>();
+
+    RemoteMediaClientAdapter(@NonNull RemoteMediaClient remoteMediaClient) {
+        this.remoteMediaClient = remoteMediaClient;
+    }
+
+    /**
+     * Wraps the result of a request sent directly through the {@link RemoteMediaClient}.
+     */
+    static @Nullable PendingCommand wrap(@Nullable PendingResult<RemoteMediaClient.MediaChannelResult> pendingResult) {
+        return pendingResult != null ? new PendingResultCommand(pendingResult) : null;
+    }
+
+    @Override
+    public @Nullable CasterStatus getStatus(long timestamp) {
+        MediaStatus mediaStatus = remoteMediaClient.getMediaStatus();
+        if (mediaStatus == null) return null;
+
+        MediaInfo mediaInfo = mediaStatus.getMediaInfo();
+
+        return new CasterStatus(mediaStatus.getPlayerState(), mediaStatus.getIdleReason(),
+                mediaStatus.getStreamPosition(),
+                mediaInfo != null ? mediaInfo.getStreamDuration() : CasterStatus.UNKNOWN_DURATION,
+                mediaStatus.getPlaybackRate(), mediaStatus.getStreamVolume(),
+                mediaInfo != null ? mediaInfo.getContentId() : null,
+                timestamp);
+    }
+
+    @Override
+    public long getApproximateStreamPosition() {
+        return remoteMediaClient.getApproximateStreamPosition();
+    }
+
+    @Override
+    public @Nullable PendingCommand play() {
+        return wrap(remoteMediaClient.play());
+    }
+
+    @Override
+    public @Nullable PendingCommand pause() {
+        return wrap(remoteMediaClient.pause());
+    }
+
+    @Override
+    public @Nullable PendingCommand seek(long position) {
+        return wrap(remoteMediaClient.seek(position));
+    }
+
+    @Override
+    public @Nullable PendingCommand setStreamVolume(double volume) {
+        return wrap(remoteMediaClient.setStreamVolume(volume));
+    }
+
+    @Override
+    public @Nullable PendingCommand setPlaybackRate(double rate) {
+        return wrap(remoteMediaClient.setPlaybackRate(rate));
+    }
+
+    @Override
+    public @Nullable PendingCommand requestStatus() {
+        return wrap(remoteMediaClient.requestStatus());
+    }
+
+    @Override
+    public void addListener(@NonNull final Listener listener) {
+        if (callbacks.containsKey(listener)) return;
+
+        RemoteMediaClient.Callback callback = new RemoteMediaClient.Callback() {
+            @Override public void onStatusUpdated() { listener.onStatusUpdated(); }
+            @Override public void onQueueStatusUpdated() { listener.onQueueStatusUpdated(); }
+            @Override public void onPreloadStatusUpdated() { listener.onPreloadStatusUpdated(); }
+            @Override public void onMetadataUpdated() {}
+            @Override public void onSendingRemoteMediaRequest() {}
+            @Override public void onAdBreakStatusUpdated() {}
+        };
+
+        callbacks.put(listener, callback);
+        remoteMediaClient.registerCallback(callback);
+    }
+
+    @Override
+    public void removeListener(@NonNull Listener listener) {
+        RemoteMediaClient.Callback callback = callbacks.remove(listener);
+        if (callback != null) remoteMediaClient.unregisterCallback(callback);
+    }
+
+    @Override
+    public void addProgressListener(@NonNull final ProgressListener progressListener, long intervalMs) {
+        if (progressListeners.containsKey(progressListener)) return;
+
+        RemoteMediaClient.ProgressListener wrapper = new RemoteMediaClient.ProgressListener() {
+            @Override
+            public void onProgressUpdated(long progressMs, long durationMs) {
+                progressListener.onProgressUpdated(progressMs, durationMs);
+            }
+        };
+
+        progressListeners.put(progressListener, wrapper);
+        remoteMediaClient.addProgressListener(wrapper, intervalMs);
+    }
+
+    @Override
+    public void removeProgressListener(@NonNull ProgressListener progressListener) {
+        RemoteMediaClient.ProgressListener wrapper = progressListeners.remove(progressListener);
+        if (wrapper != null) remoteMediaClient.removeProgressListener(wrapper);
+    }
+
+    private static final class PendingResultCommand implements PendingCommand {
+        private final PendingResult<RemoteMediaClient.MediaChannelResult> pendingResult;
+
+        PendingResultCommand(PendingResult<RemoteMediaClient.MediaChannelResult> pendingResult) {
+            this.pendingResult = pendingResult;
+        }
+
+        @Override
+        public void setResultListener(@NonNull final ResultListener resultListener) {
+            pendingResult.setResultCallback(new ResultCallback<RemoteMediaClient.MediaChannelResult>() {
+                @Override
+                public void onResult(@NonNull RemoteMediaClient.MediaChannelResult result) {
+                    Status status = result.getStatus();
+                    resultListener.onResult(status.getStatusCode(), status.isSuccess());
+                }
+            });
+        }
+    }
+}
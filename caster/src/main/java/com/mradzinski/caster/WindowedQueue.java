@@ -0,0 +1,212 @@
+package com.mradzinski.caster;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays a playlist of any length through a {@link QueueWindow} of the receiver's queue. Items are
+ * pulled from the app's {@link CasterPlayer.PagingSource} a page at a time as the playback moves
+ * forward, and the played ones are trimmed. Every queued item carries its index in the playlist in
+ * its custom data, so the window can be found again from the receiver's status.
+ */
+@MainThread
+final class WindowedQueue {
+    private static final String TAG = "Caster";
+    private static final String KEY_PLAYLIST = "casterPlaylist";
+    private static final String KEY_INDEX = "casterPlaylistIndex";
+
+    static final int MIN_WINDOW_SIZE = 3;
+    private static final int KEPT_PLAYED = 1;
+
+    /**
+     * Loads the first page of the playlist as a new queue.
+     */
+    interface Loader {
+        boolean loadQueue(@NonNull MediaQueueItem[] items, long position);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CasterMetrics metrics;
+    private final MediaInfoCache mediaInfoCache;
+
+    private RemoteMediaClient remoteMediaClient;
+    private CasterPlayer.PagingSource source;
+    private QueueWindow window;
+    private Loader loader;
+    // Identifies the current playlist, in the items' custom data and in the pages' callbacks
+    private int playlistId = 0;
+    private boolean loaded = false;
+
+    WindowedQueue(CasterMetrics metrics, MediaInfoCache mediaInfoCache) {
+        this.metrics = metrics;
+        this.mediaInfoCache = mediaInfoCache;
+    }
+
+    void setRemoteMediaClient(@Nullable RemoteMediaClient remoteMediaClient) {
+        this.remoteMediaClient = remoteMediaClient;
+        // A resumed session goes on with the same playlist, an ended one has no queue left
+        if (remoteMediaClient == null) stop();
+    }
+
+    void start(@NonNull CasterPlayer.PagingSource source, int startIndex, int windowSize, @NonNull Loader loader) {
+        stop();
+
+        this.source = source;
+        this.loader = loader;
+        window = new QueueWindow(windowSize, KEPT_PLAYED);
+        window.reset(startIndex);
+
+        fetch(startIndex, window.getFetchCount(startIndex, startIndex));
+    }
+
+    void stop() {
+        playlistId++;
+        source = null;
+        loader = null;
+        window = null;
+        loaded = false;
+    }
+
+    void onQueueStatusUpdated() {
+        if (source == null || remoteMediaClient == null) return;
+
+        MediaStatus mediaStatus = remoteMediaClient.getMediaStatus();
+        if (mediaStatus == null) return;
+
+        List<MediaQueueItem> queueItems = mediaStatus.getQueueItems();
+        if (queueItems == null || queueItems.isEmpty()) return;
+
+        int currentIndex = getPlaylistIndex(mediaStatus.getQueueItemById(mediaStatus.getCurrentItemId()));
+
+        if (currentIndex == QueueWindow.UNKNOWN) {
+            // The previous queue until the first page is loaded, another one afterwards
+            if (loaded) stop();
+            return;
+        }
+
+        loaded = true;
+
+        int firstQueued = getPlaylistIndex(queueItems.get(0));
+        int queuedEnd = getPlaylistIndex(queueItems.get(queueItems.size() - 1)) + 1;
+
+        int trimIndex = window.getTrimIndex(currentIndex, firstQueued);
+        if (trimIndex != QueueWindow.UNKNOWN) trim(queueItems, trimIndex);
+
+        int fetchCount = window.getFetchCount(currentIndex, queuedEnd);
+        if (fetchCount > 0) fetch(window.getFetchIndex(queuedEnd), fetchCount);
+    }
+
+    private void trim(List<MediaQueueItem> queueItems, int trimIndex) {
+        List<Integer> itemIds = new ArrayList<>();
+
+        for (MediaQueueItem queueItem : queueItems) {
+            int index = getPlaylistIndex(queueItem);
+            if (index != QueueWindow.UNKNOWN && index < trimIndex) itemIds.add(queueItem.getItemId());
+        }
+
+        if (itemIds.isEmpty()) return;
+
+        int[] ids = new int[itemIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = itemIds.get(i);
+        }
+
+        window.onTrimRequested(trimIndex);
+        metrics.trackCommand(CasterMetrics.COMMAND_QUEUE_REMOVE,
+                RemoteMediaClientAdapter.wrap(remoteMediaClient.queueRemoveItems(ids, null)), null);
+    }
+
+    private void fetch(final int fetchIndex, final int count) {
+        if (count <= 0) return;
+
+        final int fetchPlaylistId = playlistId;
+        window.onFetchStarted();
+
+        source.loadPage(fetchIndex, count, new CasterPlayer.PageCallback() {
+            @Override
+            public void onPageLoaded(@NonNull final List<MediaData> mediaDataList) {
+                // Pages may be built on a background thread
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (fetchPlaylistId == playlistId) onPageReceived(fetchIndex, count, mediaDataList);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageReceived(final int fetchIndex, int count, List<MediaData> mediaDataList) {
+        int received = Math.min(mediaDataList.size(), count);
+        window.onPageLoaded(fetchIndex, count, received);
+
+        boolean firstPage = loader != null;
+
+        if (received == 0) {
+            if (firstPage) stop();
+            return;
+        }
+
+        MediaQueueItem[] items = new MediaQueueItem[received];
+        for (int i = 0; i < received; i++) {
+            MediaData mediaData = mediaDataList.get(i);
+            items[i] = mediaData.createMediaQueueItem(mediaInfoCache.get(mediaData), createCustomData(fetchIndex + i));
+        }
+
+        if (firstPage) {
+            Loader firstPageLoader = loader;
+            loader = null;
+
+            if (!firstPageLoader.loadQueue(items, mediaDataList.get(0).getPosition())) stop();
+            return;
+        }
+
+        if (remoteMediaClient == null) return;
+
+        final QueueWindow pageWindow = window;
+        metrics.trackCommand(CasterMetrics.COMMAND_QUEUE_INSERT, RemoteMediaClientAdapter.wrap(
+                remoteMediaClient.queueInsertItems(items, MediaQueueItem.INVALID_ITEM_ID, null)),
+                new MediaClient.ResultListener() {
+                    @Override
+                    public void onResult(int statusCode, boolean success) {
+                        if (!success) pageWindow.onQueueingFailed(fetchIndex);
+                    }
+                });
+    }
+
+    private @Nullable JSONObject createCustomData(int index) {
+        try {
+            return new JSONObject().put(KEY_PLAYLIST, playlistId).put(KEY_INDEX, index);
+        } catch (JSONException e) {
+            Log.w(TAG, "Unable to tag the queue item " + index, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the item's index in the current playlist or {@link QueueWindow#UNKNOWN} if it isn't
+     * part of it
+     */
+    private int getPlaylistIndex(@Nullable MediaQueueItem queueItem) {
+        if (queueItem == null) return QueueWindow.UNKNOWN;
+
+        JSONObject customData = queueItem.getCustomData();
+        if (customData == null || customData.optInt(KEY_PLAYLIST, -1) != playlistId) return QueueWindow.UNKNOWN;
+
+        return customData.optInt(KEY_INDEX, QueueWindow.UNKNOWN);
+    }
+}
@@ -18,6 +18,8 @@ import com.mradzinski.caster.Caster;
 import java.util.Locale;
 
 public class App extends Application {
+    // Switch off to compare the startup times logged by MainActivity without Caster's warm-up
+    static final boolean WARM_UP_CASTER = true;
 
     @Override
     public void onCreate() {
@@ -29,5 +31,7 @@ public class App extends Application {
                 .build();
 
         Caster.configure(launchOptions);
+
+        if (WARM_UP_CASTER) Caster.warmUp(this);
     }
 }
@@ -1,6 +1,7 @@
 package com.mradzinski.casterexample;
 
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.app.MediaRouteButton;
 import android.util.Log;
@@ -12,6 +13,8 @@ import com.mradzinski.caster.Caster;
 import com.mradzinski.caster.ExpandedControlsStyle;
 import com.mradzinski.caster.MediaData;
 
+import java.util.Locale;
+
 public class MainActivity extends AppCompatActivity {
     private static final String VIMEO_URL = "Your M3U URL goes here :)";
 
@@ -21,10 +24,13 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long onCreateStart = SystemClock.elapsedRealtimeNanos();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        long createStart = SystemClock.elapsedRealtimeNanos();
         caster = Caster.create(this);
+        long createTime = SystemClock.elapsedRealtimeNanos() - createStart;
         caster.addMiniController(R.layout.custom_mini_controller);
 
         ExpandedControlsStyle style = new ExpandedControlsStyle.Builder()
@@ -37,6 +43,10 @@ public class MainActivity extends AppCompatActivity {
 
         setUpPlayButton();
         setUpMediaRouteButton();
+
+        long onCreateTime = SystemClock.elapsedRealtimeNanos() - onCreateStart;
+        Log.i("Caster", String.format(Locale.US, "Startup (warm-up %s): Caster.create() %.2f ms, onCreate() %.2f ms",
+                App.WARM_UP_CASTER ? "on" : "off", createTime / 1e6, onCreateTime / 1e6));
     }
 
     private void setUpPlayButton() {